@@ -0,0 +1,38 @@
+package com.github.clans.fab;
+
+import android.graphics.Color;
+import android.test.AndroidTestCase;
+import android.view.View;
+
+import java.util.Collections;
+
+public class FloatingActionMenuItemsTest extends AndroidTestCase {
+
+    public void testRecycledButtonGetsDefaultColorsBack() {
+        FloatingActionButton defaults = new FloatingActionButton(getContext());
+        FloatingActionMenu menu = new FloatingActionMenu(getContext());
+
+        FloatingActionMenu.Item colored = new FloatingActionMenu.Item(1, 0, "Colored");
+        colored.setColors(Color.RED, Color.GREEN, Color.BLUE);
+        menu.setItems(Collections.singletonList(colored));
+        FloatingActionButton button = findItemButton(menu);
+        assertEquals(Color.RED, button.getColorNormal());
+
+        // a new id, so the button of the colored item is recycled
+        menu.setItems(Collections.singletonList(new FloatingActionMenu.Item(2, 0, "Plain")));
+        assertSame(button, findItemButton(menu));
+        assertEquals(defaults.getColorNormal(), button.getColorNormal());
+        assertEquals(defaults.getColorPressed(), button.getColorPressed());
+        assertEquals(defaults.getColorRipple(), button.getColorRipple());
+    }
+
+    private static FloatingActionButton findItemButton(FloatingActionMenu menu) {
+        for (int i = 0; i < menu.getChildCount(); i++) {
+            View child = menu.getChildAt(i);
+            if (child.getTag(R.id.fab_item) != null) {
+                return (FloatingActionButton) child;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.clans.fab;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.util.SparseArray;
+import android.view.animation.Animation;
+import android.view.animation.AnimationUtils;
+import android.view.animation.LinearInterpolator;
+import android.view.animation.Transformation;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Cache of the show/hide animations, parsed once per resource id, theme and view size.
+ * <p>
+ * An {@link Animation} keeps its running state, so it can't be shared between views. Each view
+ * gets a lightweight {@link Animation} of its own instead, which samples the shared definition
+ * while it runs. The definition keeps an animation initialized for each of the last few sizes it
+ * was sampled with, so that views of different sizes, e.g. the labels of a menu, can animate at
+ * the same time without initializing it again. Must only be used from the UI thread.
+ */
+final class AnimationCache {
+
+    private static final Map<Resources.Theme, SparseArray<Definition>> sDefinitions =
+            new WeakHashMap<Resources.Theme, SparseArray<Definition>>();
+
+    private AnimationCache() {
+    }
+
+    /**
+     * Returns a new animation playing the animation resource with the given id.
+     */
+    static Animation obtain(Context context, int resId) {
+        Resources.Theme theme = context.getTheme();
+        SparseArray<Definition> definitions = sDefinitions.get(theme);
+        if (definitions == null) {
+            definitions = new SparseArray<Definition>();
+            sDefinitions.put(theme, definitions);
+        }
+
+        Definition definition = definitions.get(resId);
+        if (definition == null) {
+            definition = new Definition(context, resId);
+            definitions.put(resId, definition);
+        }
+        return new SharedAnimation(definition);
+    }
+
+    /**
+     * A parsed animation, with a copy initialized for each size it is sampled with. Once there
+     * are too many sizes, or the context to parse more copies is gone, the copy used least
+     * recently is initialized for the new size instead.
+     */
+    private static class Definition {
+
+        private static final int MAX_SIZES = 16;
+
+        private final WeakReference<Context> mContext;
+        private final int mResId;
+        private final Animation mAnimation;
+        private final long mDuration;
+        private final ArrayList<SizedAnimation> mSizedAnimations = new ArrayList<SizedAnimation>(MAX_SIZES);
+
+        private Definition(Context context, int resId) {
+            // the themes the definitions are kept for must not be reachable from them
+            mContext = new WeakReference<Context>(context);
+            mResId = resId;
+            mAnimation = AnimationUtils.loadAnimation(context, resId);
+            mDuration = mAnimation.computeDurationHint();
+        }
+
+        void getTransformation(int width, int height, int parentWidth, int parentHeight,
+                               float fraction, Transformation t) {
+            SizedAnimation sized = getSizedAnimation(width, height, parentWidth, parentHeight);
+            t.clear();
+            sized.mAnimation.getTransformation((long) (fraction * mDuration), t);
+        }
+
+        private SizedAnimation getSizedAnimation(int width, int height, int parentWidth, int parentHeight) {
+            int count = mSizedAnimations.size();
+            for (int i = count - 1; i >= 0; i--) {
+                SizedAnimation sized = mSizedAnimations.get(i);
+                if (sized.hasSize(width, height, parentWidth, parentHeight)) {
+                    if (i != count - 1) {
+                        mSizedAnimations.remove(i);
+                        mSizedAnimations.add(sized);
+                    }
+                    return sized;
+                }
+            }
+
+            SizedAnimation sized;
+            Context context = mContext.get();
+            if (count == 0) {
+                sized = new SizedAnimation(mAnimation);
+            } else if (count < MAX_SIZES && context != null) {
+                sized = new SizedAnimation(AnimationUtils.loadAnimation(context, mResId));
+            } else {
+                sized = mSizedAnimations.remove(0);
+            }
+            sized.initialize(width, height, parentWidth, parentHeight);
+            mSizedAnimations.add(sized);
+            return sized;
+        }
+    }
+
+    private static class SizedAnimation {
+
+        private final Animation mAnimation;
+        private int mWidth;
+        private int mHeight;
+        private int mParentWidth;
+        private int mParentHeight;
+
+        private SizedAnimation(Animation animation) {
+            mAnimation = animation;
+        }
+
+        boolean hasSize(int width, int height, int parentWidth, int parentHeight) {
+            return width == mWidth && height == mHeight && parentWidth == mParentWidth
+                    && parentHeight == mParentHeight;
+        }
+
+        void initialize(int width, int height, int parentWidth, int parentHeight) {
+            mAnimation.initialize(width, height, parentWidth, parentHeight);
+            mAnimation.setStartTime(0);
+            mWidth = width;
+            mHeight = height;
+            mParentWidth = parentWidth;
+            mParentHeight = parentHeight;
+        }
+    }
+
+    private static class SharedAnimation extends Animation {
+
+        private static final LinearInterpolator LINEAR_INTERPOLATOR = new LinearInterpolator();
+
+        private final Definition mDefinition;
+        private int mWidth;
+        private int mHeight;
+        private int mParentWidth;
+        private int mParentHeight;
+
+        private SharedAnimation(Definition definition) {
+            mDefinition = definition;
+
+            // the definition applies its own interpolators and start offsets while it is sampled
+            setInterpolator(LINEAR_INTERPOLATOR);
+            setDuration(definition.mDuration);
+            setFillEnabled(definition.mAnimation.isFillEnabled());
+            setFillBefore(definition.mAnimation.getFillBefore());
+            setFillAfter(definition.mAnimation.getFillAfter());
+        }
+
+        @Override
+        public void initialize(int width, int height, int parentWidth, int parentHeight) {
+            super.initialize(width, height, parentWidth, parentHeight);
+            mWidth = width;
+            mHeight = height;
+            mParentWidth = parentWidth;
+            mParentHeight = parentHeight;
+        }
+
+        @Override
+        protected void applyTransformation(float interpolatedTime, Transformation t) {
+            mDefinition.getTransformation(mWidth, mHeight, mParentWidth, mParentHeight, interpolatedTime, t);
+        }
+
+        @Override
+        public boolean willChangeTransformationMatrix() {
+            return mDefinition.mAnimation.willChangeTransformationMatrix();
+        }
+
+        @Override
+        public boolean willChangeBounds() {
+            return mDefinition.mAnimation.willChangeBounds();
+        }
+    }
+}
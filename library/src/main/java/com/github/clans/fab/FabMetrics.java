@@ -0,0 +1,69 @@
+package com.github.clans.fab;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+
+/**
+ * Dimensions used by the buttons and the menu, resolved once per configuration so that the
+ * measure and draw paths do not have to look them up in {@link Resources}.
+ */
+final class FabMetrics {
+
+    private static final Configuration sConfiguration = new Configuration();
+    private static FabMetrics sMetrics;
+
+    final float density;
+    final int fabSizeNormal;
+    final int fabSizeMini;
+    final float labelsTextSize;
+    final int shadowRadius;
+    final int shadowXOffset;
+    final int shadowYOffset;
+    final int iconSize;
+    final int progressWidth;
+    final int labelsPaddingHorizontal;
+    final int labelsPaddingVertical;
+    final int labelsCornerRadius;
+
+    private FabMetrics(Resources res) {
+        density = res.getDisplayMetrics().density;
+        fabSizeNormal = res.getDimensionPixelSize(R.dimen.fab_size_normal);
+        fabSizeMini = res.getDimensionPixelSize(R.dimen.fab_size_mini);
+        labelsTextSize = res.getDimension(R.dimen.labels_text_size);
+        shadowRadius = dpToPx(4f);
+        shadowXOffset = dpToPx(1f);
+        shadowYOffset = dpToPx(3f);
+        iconSize = dpToPx(24f);
+        progressWidth = dpToPx(6f);
+        labelsPaddingHorizontal = dpToPx(8f);
+        labelsPaddingVertical = dpToPx(4f);
+        labelsCornerRadius = dpToPx(3f);
+    }
+
+    /**
+     * Returns the metrics for the current configuration of the given context. The table is only
+     * rebuilt when the configuration changes.
+     */
+    static synchronized FabMetrics get(Context context) {
+        Resources res = context.getResources();
+        Configuration config = res.getConfiguration();
+        if (sMetrics == null || !sConfiguration.equals(config)
+                || sMetrics.density != res.getDisplayMetrics().density) {
+            sConfiguration.setTo(config);
+            sMetrics = new FabMetrics(res);
+        }
+        return sMetrics;
+    }
+
+    /**
+     * Converts density-independent pixels to pixels with the density of this configuration.
+     */
+    int dpToPx(float dp) {
+        return Math.round(dp * density);
+    }
+
+    int getCircleSize(int fabSize) {
+        return fabSize == FloatingActionButton.SIZE_NORMAL ? fabSizeNormal : fabSizeMini;
+    }
+}
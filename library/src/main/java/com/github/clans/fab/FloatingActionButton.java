@@ -3,24 +3,22 @@ package com.github.clans.fab;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.ColorStateList;
+import android.content.res.Configuration;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.ColorFilter;
 import android.graphics.Outline;
 import android.graphics.Paint;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
 import android.graphics.RectF;
-import android.graphics.Xfermode;
 import android.graphics.drawable.ColorDrawable;
 import android.graphics.drawable.Drawable;
-import android.graphics.drawable.LayerDrawable;
 import android.graphics.drawable.RippleDrawable;
 import android.graphics.drawable.ShapeDrawable;
-import android.graphics.drawable.StateListDrawable;
 import android.graphics.drawable.shapes.OvalShape;
-import android.graphics.drawable.shapes.Shape;
 import android.os.Build;
 import android.os.Parcel;
 import android.os.Parcelable;
@@ -30,52 +28,88 @@ import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
-import android.view.ViewOutlineProvider;
 import android.view.animation.Animation;
-import android.view.animation.AnimationUtils;
 import android.widget.ImageButton;
 import android.widget.TextView;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 public class FloatingActionButton extends ImageButton {
 
     public static final int SIZE_NORMAL = 0;
     public static final int SIZE_MINI = 1;
 
+    public interface OnShowHideFinishedListener {
+        /**
+         * Called when the <b>FloatingActionButton</b> is fully shown or hidden, after its show or
+         * hide animation has ended. Not called for an animation which is reversed midway.
+         */
+        void onShowHideFinished(FloatingActionButton fab, boolean hidden);
+    }
+
     int mFabSize;
     boolean mShowShadow;
     int mShadowColor;
-    int mShadowRadius = Util.dpToPx(getContext(), 4f);
-    int mShadowXOffset = Util.dpToPx(getContext(), 1f);
-    int mShadowYOffset = Util.dpToPx(getContext(), 3f);
+    int mShadowRadius = getMetrics().shadowRadius;
+    int mShadowXOffset = getMetrics().shadowXOffset;
+    int mShadowYOffset = getMetrics().shadowYOffset;
 
-    private static final Xfermode PORTER_DUFF_CLEAR = new PorterDuffXfermode(PorterDuff.Mode.CLEAR);
+    private static final int DEFAULT_SHADOW_COLOR = 0x66000000;
     private static final long PAUSE_GROWING_TIME = 200;
     private static final double BAR_SPIN_CYCLE_TIME = 500;
     private static final int BAR_MAX_LENGTH = 270;
+    private static final long OFFSCREEN_PROGRESS_CHECK_INTERVAL = 250;
+    private static final int PROGRESS_SOURCE_IDLE_FRAMES = 30;
 
     private int mColorNormal;
     private int mColorPressed;
     private int mColorRipple;
     private Drawable mIcon;
-    private int mIconSize = Util.dpToPx(getContext(), 24f);
+    private Drawable mEmptyIcon;
+    private int mIconSize = getMetrics().iconSize;
     private Animation mShowAnimation;
     private Animation mHideAnimation;
+    private final ShowHideAnimator mShowHideAnimator = new ShowHideAnimator(this, new ShowHideAnimator.Listener() {
+        @Override
+        public void onShowHideFinished(boolean hidden) {
+            if (mShowHideFinishedListener != null) {
+                mShowHideFinishedListener.onShowHideFinished(FloatingActionButton.this, hidden);
+            }
+            if (getParent() instanceof FloatingActionMenu) {
+                ((FloatingActionMenu) getParent()).onItemShowHideFinished();
+            }
+        }
+    });
+    private OnShowHideFinishedListener mShowHideFinishedListener;
+    private boolean mRequestedHidden;
+    private final FrameCallbackCompat mVisibilityCallback = new FrameCallbackCompat() {
+        @Override
+        void doFrame(long frameTimeNanos) {
+            setHidden(mRequestedHidden, true);
+        }
+    };
     private String mLabelText;
     private OnClickListener mClickListener;
-    private Drawable mBackgroundDrawable;
+    private FabDrawable mFabDrawable;
+    private FabMetrics mMetrics;
     private boolean mUsingElevation;
     private boolean mUsingElevationCompat;
+    private boolean mUsingNativeShadow;
+    private int mBatchUpdateDepth;
+    private boolean mBackgroundUpdatePending;
 
     // Progress
     private boolean mProgressBarEnabled;
-    private int mProgressWidth = Util.dpToPx(getContext(), 6f);
+    private int mProgressWidth = getMetrics().progressWidth;
     private int mProgressColor;
     private int mProgressBackgroundColor;
     private boolean mShouldUpdateButtonPosition;
     private float mOriginalX = -1;
     private float mOriginalY = -1;
     private boolean mButtonPositionSaved;
-    private RectF mProgressCircleBounds = new RectF();
+    private final RectF mProgressCircleBounds = new RectF();
+    private final ProgressDrawable mProgressDrawable = new ProgressDrawable();
     private Paint mBackgroundPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
     private Paint mProgressPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
     private boolean mProgressIndeterminate;
@@ -94,6 +128,33 @@ public class FloatingActionButton extends ImageButton {
     private boolean mShouldSetProgress;
     private int mProgressMax = 100;
     private boolean mShowProgressBackground;
+    private boolean mProgressSpaceReserved;
+    private int mProgressFrameRate;
+    private boolean mAttachedToWindow;
+    private final Rect mVisibleRect = new Rect();
+    private final FrameCallbackCompat mProgressFrameCallback = new FrameCallbackCompat() {
+        @Override
+        void doFrame(long frameTimeNanos) {
+            onProgressFrame();
+        }
+    };
+    private AtomicInteger mProgressSource;
+    private boolean mAnimateProgressSource;
+    private int mSampledProgress;
+    private int mUnchangedSourceFrames;
+    private final AtomicBoolean mProgressSourceIdle = new AtomicBoolean();
+    private final FrameCallbackCompat mProgressSourceCallback = new FrameCallbackCompat() {
+        @Override
+        void doFrame(long frameTimeNanos) {
+            sampleProgressSource();
+        }
+    };
+    private final Runnable mResumeProgressSource = new Runnable() {
+        @Override
+        public void run() {
+            resumeProgressSource();
+        }
+    };
 
     public FloatingActionButton(Context context) {
         this(context, null);
@@ -115,12 +176,14 @@ public class FloatingActionButton extends ImageButton {
     }
 
     private void init(Context context, AttributeSet attrs, int defStyleAttr) {
+        mProgressDrawable.setCallback(this);
+
         TypedArray attr = context.obtainStyledAttributes(attrs, R.styleable.FloatingActionButton, defStyleAttr, 0);
         mColorNormal = attr.getColor(R.styleable.FloatingActionButton_fab_colorNormal, 0xFFDA4336);
         mColorPressed = attr.getColor(R.styleable.FloatingActionButton_fab_colorPressed, 0xFFE75043);
         mColorRipple = attr.getColor(R.styleable.FloatingActionButton_fab_colorRipple, 0x99FFFFFF);
         mShowShadow = attr.getBoolean(R.styleable.FloatingActionButton_fab_showShadow, true);
-        mShadowColor = attr.getColor(R.styleable.FloatingActionButton_fab_shadowColor, 0x66000000);
+        mShadowColor = attr.getColor(R.styleable.FloatingActionButton_fab_shadowColor, DEFAULT_SHADOW_COLOR);
         mShadowRadius = attr.getDimensionPixelSize(R.styleable.FloatingActionButton_fab_shadowRadius, mShadowRadius);
         mShadowXOffset = attr.getDimensionPixelSize(R.styleable.FloatingActionButton_fab_shadowXOffset, mShadowXOffset);
         mShadowYOffset = attr.getDimensionPixelSize(R.styleable.FloatingActionButton_fab_shadowYOffset, mShadowYOffset);
@@ -131,6 +194,7 @@ public class FloatingActionButton extends ImageButton {
         mProgressBackgroundColor = attr.getColor(R.styleable.FloatingActionButton_fab_progress_backgroundColor, 0x4D000000);
         mProgressMax = attr.getInt(R.styleable.FloatingActionButton_fab_progress_max, mProgressMax);
         mShowProgressBackground = attr.getBoolean(R.styleable.FloatingActionButton_fab_progress_showBackground, true);
+        mProgressSpaceReserved = attr.getBoolean(R.styleable.FloatingActionButton_fab_progress_reserveSpace, false);
 
         if (attr.hasValue(R.styleable.FloatingActionButton_fab_progress)) {
             mProgress = attr.getInt(R.styleable.FloatingActionButton_fab_progress, 0);
@@ -165,22 +229,30 @@ public class FloatingActionButton extends ImageButton {
 
     private void initShowAnimation(TypedArray attr) {
         int resourceId = attr.getResourceId(R.styleable.FloatingActionButton_fab_showAnimation, R.anim.fab_scale_up);
-        mShowAnimation = AnimationUtils.loadAnimation(getContext(), resourceId);
+        mShowAnimation = AnimationCache.obtain(getContext(), resourceId);
     }
 
     private void initHideAnimation(TypedArray attr) {
         int resourceId = attr.getResourceId(R.styleable.FloatingActionButton_fab_hideAnimation, R.anim.fab_scale_down);
-        mHideAnimation = AnimationUtils.loadAnimation(getContext(), resourceId);
+        mHideAnimation = AnimationCache.obtain(getContext(), resourceId);
+    }
+
+    private FabMetrics getMetrics() {
+        if (mMetrics == null) {
+            // ImageView's constructor sets the icon, which updates the background before init(),
+            // and the field initializers take their default dimensions from here as well
+            mMetrics = FabMetrics.get(getContext());
+        }
+        return mMetrics;
     }
 
     private int getCircleSize() {
-        return getResources().getDimensionPixelSize(mFabSize == SIZE_NORMAL
-                ? R.dimen.fab_size_normal : R.dimen.fab_size_mini);
+        return getMetrics().getCircleSize(mFabSize);
     }
 
     private int calculateMeasuredWidth() {
         int width = getCircleSize() + calculateShadowWidth();
-        if (mProgressBarEnabled) {
+        if (hasProgressSpace()) {
             width += mProgressWidth * 2;
         }
         return width;
@@ -188,12 +260,20 @@ public class FloatingActionButton extends ImageButton {
 
     private int calculateMeasuredHeight() {
         int height = getCircleSize() + calculateShadowHeight();
-        if (mProgressBarEnabled) {
+        if (hasProgressSpace()) {
             height += mProgressWidth * 2;
         }
         return height;
     }
 
+    /**
+     * Whether the measured size includes the ring, which is always the case when the space is
+     * reserved, so that showing or hiding the progress doesn't change the size of the button.
+     */
+    private boolean hasProgressSpace() {
+        return mProgressBarEnabled || mProgressSpaceReserved;
+    }
+
     int calculateShadowWidth() {
         return hasShadow() ? getShadowX() * 2 : 0;
     }
@@ -229,58 +309,129 @@ public class FloatingActionButton extends ImageButton {
         super.onDraw(canvas);
 
         if (mProgressBarEnabled) {
-            if (mShowProgressBackground) {
-                canvas.drawArc(mProgressCircleBounds, 360, 360, false, mBackgroundPaint);
-            }
+            mProgressDrawable.draw(canvas);
+        }
+    }
 
-            boolean shouldInvalidate = false;
+    @Override
+    protected boolean verifyDrawable(Drawable who) {
+        return who == mProgressDrawable || super.verifyDrawable(who);
+    }
 
-            if (mProgressIndeterminate) {
-                shouldInvalidate = true;
+    private boolean isProgressAnimating() {
+        return mProgressBarEnabled && (mProgressIndeterminate || mCurrentProgress != mTargetProgress);
+    }
 
-                long deltaTime = SystemClock.uptimeMillis() - mLastTimeAnimated;
-                float deltaNormalized = deltaTime * mSpinSpeed / 1000.0f;
+    /**
+     * The progress ring is only animated while somebody can see it: the button has to be attached,
+     * shown, in a visible window and at least partially on screen.
+     */
+    private boolean canAnimateProgress() {
+        return mAttachedToWindow && getWindowVisibility() == VISIBLE && isShown() && !isInEditMode();
+    }
 
-                updateProgressLength(deltaTime);
+    private void scheduleProgressFrame(long delayMillis) {
+        if (!canAnimateProgress()) return;
 
-                mCurrentProgress += deltaNormalized;
-                if (mCurrentProgress > 360f) {
-                    mCurrentProgress -= 360f;
-                }
+        if (mProgressFrameRate > 0) {
+            delayMillis = Math.max(delayMillis,
+                    1000 / mProgressFrameRate - FrameCallbackCompat.FRAME_INTERVAL / 2);
+        }
+        mProgressFrameCallback.postFrameDelayed(delayMillis);
+    }
 
-                mLastTimeAnimated = SystemClock.uptimeMillis();
-                float from = mCurrentProgress - 90;
-                float to = mBarLength + mBarExtraLength;
+    private void onProgressFrame() {
+        if (!isProgressAnimating() || !canAnimateProgress()) return;
 
-                if (isInEditMode()) {
-                    from = 0;
-                    to = 135;
-                }
+        if (!getLocalVisibleRect(mVisibleRect)) {
+            // scrolled off screen: skip drawing and check again later
+            mProgressFrameCallback.postFrameDelayed(OFFSCREEN_PROGRESS_CHECK_INTERVAL);
+            mLastTimeAnimated = SystemClock.uptimeMillis();
+            return;
+        }
 
-                canvas.drawArc(mProgressCircleBounds, from, to, false, mProgressPaint);
-            } else {
-                if (mCurrentProgress != mTargetProgress) {
-                    shouldInvalidate = true;
-                    float deltaTime = (float) (SystemClock.uptimeMillis() - mLastTimeAnimated) / 1000;
-                    float deltaNormalized = deltaTime * mSpinSpeed;
+        mProgressDrawable.invalidateSelf();
+    }
 
-                    if (mCurrentProgress > mTargetProgress) {
-                        mCurrentProgress = Math.max(mCurrentProgress - deltaNormalized, mTargetProgress);
-                    } else {
-                        mCurrentProgress = Math.min(mCurrentProgress + deltaNormalized, mTargetProgress);
-                    }
-                    mLastTimeAnimated = SystemClock.uptimeMillis();
-                }
+    private void updateProgressAnimation() {
+        // visibility callbacks may arrive from the super constructor
+        if (mProgressFrameCallback == null || mProgressSourceCallback == null) return;
 
-                canvas.drawArc(mProgressCircleBounds, -90, mCurrentProgress, false, mProgressPaint);
-            }
+        if (mProgressSource != null && !mProgressSourceIdle.get() && canAnimateProgress()) {
+            mProgressSourceCallback.postFrame();
+        } else {
+            mProgressSourceCallback.cancel();
+        }
 
-            if (shouldInvalidate) {
-                invalidate();
+        if (isProgressAnimating() && canAnimateProgress()) {
+            if (!mProgressFrameCallback.isPosted()) {
+                mLastTimeAnimated = SystemClock.uptimeMillis();
+                mProgressDrawable.invalidateSelf();
             }
+        } else {
+            mProgressFrameCallback.cancel();
         }
     }
 
+    private void sampleProgressSource() {
+        if (mProgressSource == null || !canAnimateProgress()) return;
+
+        int progress = mProgressSource.get();
+        if (progress != mSampledProgress) {
+            mSampledProgress = progress;
+            mUnchangedSourceFrames = 0;
+            setProgress(progress, mAnimateProgressSource);
+        } else {
+            mUnchangedSourceFrames++;
+        }
+
+        // stop sampling until notifyProgressChanged() once the value settles or isn't shown
+        if (!mProgressBarEnabled || mUnchangedSourceFrames >= PROGRESS_SOURCE_IDLE_FRAMES) {
+            mProgressSourceIdle.set(true);
+            // a write made before the flag was set won't be followed by a resume
+            if (mProgressSource.get() == mSampledProgress) return;
+            mProgressSourceIdle.set(false);
+        }
+        mProgressSourceCallback.postFrame();
+    }
+
+    private void resumeProgressSource() {
+        mProgressSourceIdle.set(false);
+        mUnchangedSourceFrames = 0;
+        updateProgressAnimation();
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        mAttachedToWindow = true;
+        updateProgressAnimation();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        mAttachedToWindow = false;
+        updateProgressAnimation();
+        if (mVisibilityCallback.isPosted()) {
+            mVisibilityCallback.cancel();
+            setHidden(mRequestedHidden, false);
+        }
+        mShowHideAnimator.cancel();
+        super.onDetachedFromWindow();
+    }
+
+    @Override
+    protected void onWindowVisibilityChanged(int visibility) {
+        super.onWindowVisibilityChanged(visibility);
+        updateProgressAnimation();
+    }
+
+    @Override
+    protected void onVisibilityChanged(View changedView, int visibility) {
+        super.onVisibilityChanged(changedView, visibility);
+        updateProgressAnimation();
+    }
+
     private void updateProgressLength(long deltaTimeInMillis) {
         if (mPausedTimeWithoutGrowing >= PAUSE_GROWING_TIME) {
             mTimeStartGrowing += deltaTimeInMillis;
@@ -327,6 +478,16 @@ public class FloatingActionButton extends ImageButton {
         updateBackground();
     }
 
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        FabMetrics metrics = FabMetrics.get(getContext());
+        if (mMetrics != metrics) {
+            mMetrics = metrics;
+            updateBackground();
+        }
+    }
+
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     @Override
     public void setLayoutParams(ViewGroup.LayoutParams params) {
@@ -339,88 +500,99 @@ public class FloatingActionButton extends ImageButton {
         super.setLayoutParams(params);
     }
 
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     void updateBackground() {
-        LayerDrawable layerDrawable;
-        if (hasShadow()) {
-            layerDrawable = new LayerDrawable(new Drawable[]{
-                    new Shadow(),
-                    createFillDrawable(),
-                    getIconDrawable()
-            });
-        } else {
-            layerDrawable = new LayerDrawable(new Drawable[]{
-                    createFillDrawable(),
-                    getIconDrawable()
-            });
+        if (mBatchUpdateDepth > 0) {
+            mBackgroundUpdatePending = true;
+            return;
         }
 
-        int iconSize = -1;
-        if (getIconDrawable() != null) {
-            iconSize = Math.max(getIconDrawable().getIntrinsicWidth(), getIconDrawable().getIntrinsicHeight());
+        updateShadowStrategy();
+
+        if (mFabDrawable == null) {
+            mFabDrawable = new FabDrawable();
         }
-        int iconOffset = (getCircleSize() - (iconSize > 0 ? iconSize : mIconSize)) / 2;
-        int circleInsetHorizontal = hasShadow() ? mShadowRadius + Math.abs(mShadowXOffset) : 0;
-        int circleInsetVertical = hasShadow() ? mShadowRadius + Math.abs(mShadowYOffset) : 0;
+        mFabDrawable.update();
 
-        if (mProgressBarEnabled) {
-            circleInsetHorizontal += mProgressWidth;
-            circleInsetVertical += mProgressWidth;
-        }
-
-        /*layerDrawable.setLayerInset(
-                mShowShadow ? 1 : 0,
-                circleInsetHorizontal,
-                circleInsetVertical,
-                circleInsetHorizontal,
-                circleInsetVertical
-        );*/
-        layerDrawable.setLayerInset(
-                hasShadow() ? 2 : 1,
-                circleInsetHorizontal + iconOffset,
-                circleInsetVertical + iconOffset,
-                circleInsetHorizontal + iconOffset,
-                circleInsetVertical + iconOffset
-        );
+        if (getBackground() != mFabDrawable) {
+            setBackgroundCompat(mFabDrawable);
+        }
 
-        setBackgroundCompat(layerDrawable);
+        if (Util.hasLollipop()) {
+            invalidateOutline();
+        }
+
+        if (calculateMeasuredWidth() != getMeasuredWidth()
+                || calculateMeasuredHeight() != getMeasuredHeight()) {
+            requestLayout();
+        }
     }
 
-    protected Drawable getIconDrawable() {
-        if (mIcon != null) {
-            return mIcon;
-        } else {
-            return new ColorDrawable(Color.TRANSPARENT);
+    private void beginBatchUpdate() {
+        mBatchUpdateDepth++;
+    }
+
+    private void endBatchUpdate() {
+        mBatchUpdateDepth--;
+        if (mBatchUpdateDepth == 0 && mBackgroundUpdatePending) {
+            mBackgroundUpdatePending = false;
+            updateBackground();
         }
     }
 
-    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
-    private Drawable createFillDrawable() {
-        StateListDrawable drawable = new StateListDrawable();
-        drawable.addState(new int[]{android.R.attr.state_pressed}, createCircleDrawable(mColorPressed));
-        drawable.addState(new int[]{}, createCircleDrawable(mColorNormal));
+    /**
+     * Selects how the shadow is rendered. On API 21+ a plain black shadow is mapped to the native
+     * outline-based elevation, which is drawn by the render thread. Older devices, colored shadows
+     * and the layout editor keep the cached software shadow mask. In both cases the space around the
+     * circle stays reserved, so the button's size and position do not depend on the platform.
+     */
+    private boolean shouldUseNativeShadow() {
+        return Util.hasLollipop() && !isInEditMode() && hasShadow()
+                && (mShadowColor & 0x00FFFFFF) == 0;
+    }
 
-        if (Util.hasLollipop()) {
-            RippleDrawable ripple = new RippleDrawable(new ColorStateList(new int[][]{{}},
-                    new int[]{mColorRipple}), drawable, null);
-            setOutlineProvider(new ViewOutlineProvider() {
-                @Override
-                public void getOutline(View view, Outline outline) {
-                    outline.setOval(0, 0, view.getWidth(), view.getHeight());
-                }
-            });
-            setClipToOutline(true);
-            mBackgroundDrawable = ripple;
-            return ripple;
+    private boolean hasSoftwareShadow() {
+        return hasShadow() && !mUsingNativeShadow;
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private void updateShadowStrategy() {
+        boolean useNativeShadow = shouldUseNativeShadow();
+        if (useNativeShadow) {
+            super.setElevation(calculateNativeElevation());
+        } else if (mUsingNativeShadow && !mUsingElevation && !mUsingElevationCompat) {
+            super.setElevation(0);
         }
+        mUsingNativeShadow = useNativeShadow;
+    }
 
-        mBackgroundDrawable = drawable;
-        return drawable;
+    /**
+     * Mirrors the mapping used by {@link #setElevationCompat(float)} to get the elevation which
+     * casts a shadow of the same extent as {@code fab_shadowRadius} and {@code fab_shadowYOffset}.
+     */
+    private float calculateNativeElevation() {
+        int yOffset = Math.abs(mShadowYOffset);
+        return (mShadowRadius * 2 + (mFabSize == SIZE_NORMAL ? yOffset : yOffset * 2)) / 2f;
     }
 
-    private Drawable createCircleDrawable(int color) {
-        CircleDrawable shapeDrawable = new CircleDrawable(new OvalShape());
-        shapeDrawable.getPaint().setColor(color);
-        return shapeDrawable;
+    /**
+     * Native shadows can only be made lighter or darker, so the alpha of {@code fab_shadowColor}
+     * is applied relative to the default shadow color.
+     */
+    private float calculateNativeShadowAlpha() {
+        return Math.min(1f, Color.alpha(mShadowColor) / (float) Color.alpha(DEFAULT_SHADOW_COLOR));
+    }
+
+    protected Drawable getIconDrawable() {
+        if (mIcon != null) {
+            return mIcon;
+        } else {
+            // kept, so that the background doesn't swap its icon on every update
+            if (mEmptyIcon == null) {
+                mEmptyIcon = new ColorDrawable(Color.TRANSPARENT);
+            }
+            return mEmptyIcon;
+        }
     }
 
     @SuppressWarnings("deprecation")
@@ -474,12 +646,21 @@ public class FloatingActionButton extends ImageButton {
     private void setupProgressBounds() {
         int circleInsetHorizontal = hasShadow() ? getShadowX() : 0;
         int circleInsetVertical = hasShadow() ? getShadowY() : 0;
-        mProgressCircleBounds = new RectF(
+        mProgressCircleBounds.set(
                 circleInsetHorizontal + mProgressWidth / 2,
                 circleInsetVertical + mProgressWidth / 2,
                 calculateMeasuredWidth() - circleInsetHorizontal - mProgressWidth / 2,
                 calculateMeasuredHeight() - circleInsetVertical - mProgressWidth / 2
         );
+
+        // the stroke is centered on the ring, so its outer half lies outside of the circle bounds
+        int strokeOutset = (mProgressWidth + 1) / 2 + 1;
+        mProgressDrawable.setBounds(
+                (int) mProgressCircleBounds.left - strokeOutset,
+                (int) mProgressCircleBounds.top - strokeOutset,
+                (int) Math.ceil(mProgressCircleBounds.right) + strokeOutset,
+                (int) Math.ceil(mProgressCircleBounds.bottom) + strokeOutset
+        );
     }
 
     Animation getShowAnimation() {
@@ -490,12 +671,22 @@ public class FloatingActionButton extends ImageButton {
         return mHideAnimation;
     }
 
+    boolean isShowHideAnimating() {
+        return mShowHideAnimator.isRunning();
+    }
+
+    void setMaxAnimationDuration(long maxDuration) {
+        mShowHideAnimator.setMaxDuration(maxDuration);
+    }
+
     void playShowAnimation() {
-        startAnimation(mShowAnimation);
+        mShowHideAnimator.setUseHardwareLayer(hasSoftwareShadow());
+        mShowHideAnimator.show(mShowAnimation);
     }
 
     void playHideAnimation() {
-        startAnimation(mHideAnimation);
+        mShowHideAnimator.setUseHardwareLayer(hasSoftwareShadow());
+        mShowHideAnimator.hide(mHideAnimation);
     }
 
     OnClickListener getOnClickListener() {
@@ -514,27 +705,23 @@ public class FloatingActionButton extends ImageButton {
 
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     void onActionDown() {
-        if (mBackgroundDrawable instanceof StateListDrawable) {
-            StateListDrawable drawable = (StateListDrawable) mBackgroundDrawable;
-            drawable.setState(new int[]{android.R.attr.state_pressed});
-        } else if (Util.hasLollipop()) {
-            RippleDrawable ripple = (RippleDrawable) mBackgroundDrawable;
-            ripple.setState(new int[]{android.R.attr.state_enabled, android.R.attr.state_pressed});
-            ripple.setHotspot(calculateCenterX(), calculateCenterY());
-            ripple.setVisible(true, true);
+        if (mFabDrawable == null) return;
+
+        mFabDrawable.setState(PRESSED_ENABLED_STATE_SET);
+        if (Util.hasLollipop()) {
+            mFabDrawable.setHotspot(calculateCenterX(), calculateCenterY());
+            mFabDrawable.setVisible(true, true);
         }
     }
 
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     void onActionUp() {
-        if (mBackgroundDrawable instanceof StateListDrawable) {
-            StateListDrawable drawable = (StateListDrawable) mBackgroundDrawable;
-            drawable.setState(new int[]{});
-        } else if (Util.hasLollipop()) {
-            RippleDrawable ripple = (RippleDrawable) mBackgroundDrawable;
-            ripple.setState(new int[]{});
-            ripple.setHotspot(calculateCenterX(), calculateCenterY());
-            ripple.setVisible(true, true);
+        if (mFabDrawable == null) return;
+
+        mFabDrawable.setState(EMPTY_STATE_SET);
+        if (Util.hasLollipop()) {
+            mFabDrawable.setHotspot(calculateCenterX(), calculateCenterY());
+            mFabDrawable.setVisible(true, true);
         }
     }
 
@@ -625,65 +812,300 @@ public class FloatingActionButton extends ImageButton {
         this.mLastTimeAnimated = SystemClock.uptimeMillis();
     }
 
-    private class CircleDrawable extends ShapeDrawable {
+    /**
+     * Draws the whole button: shadow, circle fill with its pressed state, ripple and icon.
+     * Geometry is only computed when the bounds or the button's properties change.
+     */
+    private class FabDrawable extends Drawable implements Drawable.Callback {
+
+        private final Paint mShadowPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        private final Paint mFillPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        private final RectF mCircleBounds = new RectF();
+        private final Rect mTmpBounds = new Rect();
+        private Bitmap mShadowMask;
+        private float mShadowLeft;
+        private float mShadowTop;
+        private Drawable mIconDrawable;
+        private Drawable mRipple;
+        private boolean mPressed;
+        private int mAlpha = 255;
+
+        private FabDrawable() {
+            mFillPaint.setStyle(Paint.Style.FILL);
+        }
+
+        @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+        void update() {
+            mShadowPaint.setColor(mShadowColor);
+            mShadowPaint.setAlpha(Color.alpha(mShadowColor) * mAlpha / 255);
+            mShadowMask = null;
+            if (hasSoftwareShadow() && !isInEditMode()) {
+                int radius = getCircleSize() / 2;
+                if (mProgressBarEnabled && mShowProgressBackground) {
+                    radius += mProgressWidth;
+                }
+                mShadowMask = ShadowCache.getCircleShadow(getMetrics().density, radius * 2, mShadowRadius,
+                        mShadowXOffset, mShadowYOffset);
+            }
+
+            Drawable icon = getIconDrawable();
+            if (mIconDrawable != icon) {
+                if (mIconDrawable != null && mIconDrawable.getCallback() == this) {
+                    mIconDrawable.setCallback(null);
+                }
+                mIconDrawable = icon;
+                if (mIconDrawable != null) {
+                    mIconDrawable.setCallback(this);
+                    mIconDrawable.setAlpha(mAlpha);
+                    mIconDrawable.setVisible(isVisible(), false);
+                    if (mIconDrawable.isStateful()) {
+                        mIconDrawable.setState(getState());
+                    }
+                }
+            }
 
-        private int circleInsetHorizontal;
-        private int circleInsetVertical;
+            if (Util.hasLollipop()) {
+                if (mRipple == null) {
+                    mRipple = new RippleDrawable(ColorStateList.valueOf(mColorRipple), null,
+                            new ShapeDrawable(new OvalShape()));
+                    mRipple.setCallback(this);
+                    mRipple.setState(getState());
+                } else {
+                    ((RippleDrawable) mRipple).setColor(ColorStateList.valueOf(mColorRipple));
+                }
+            }
 
-        private CircleDrawable() {
+            updateFillColor();
+            updateGeometry(getBounds());
+            invalidateSelf();
         }
 
-        private CircleDrawable(Shape s) {
-            super(s);
-            circleInsetHorizontal = hasShadow() ? mShadowRadius + Math.abs(mShadowXOffset) : 0;
-            circleInsetVertical = hasShadow() ? mShadowRadius + Math.abs(mShadowYOffset) : 0;
+        private void updateFillColor() {
+            int color = mPressed ? mColorPressed : mColorNormal;
+            mFillPaint.setColor(color);
+            mFillPaint.setAlpha(Color.alpha(color) * mAlpha / 255);
+        }
 
-            if (mProgressBarEnabled) {
+        private void updateGeometry(Rect bounds) {
+            int circleInsetHorizontal = hasShadow() ? getShadowX() : 0;
+            int circleInsetVertical = hasShadow() ? getShadowY() : 0;
+            if (hasProgressSpace()) {
                 circleInsetHorizontal += mProgressWidth;
                 circleInsetVertical += mProgressWidth;
             }
+
+            mCircleBounds.set(
+                    bounds.left + circleInsetHorizontal,
+                    bounds.top + circleInsetVertical,
+                    bounds.right - circleInsetHorizontal,
+                    bounds.bottom - circleInsetVertical
+            );
+
+            if (mShadowMask != null) {
+                mShadowLeft = bounds.exactCenterX() - mShadowMask.getWidth() / 2f;
+                mShadowTop = bounds.exactCenterY() - mShadowMask.getHeight() / 2f;
+            }
+
+            mCircleBounds.round(mTmpBounds);
+            if (mRipple != null) {
+                mRipple.setBounds(mTmpBounds);
+            }
+
+            if (mIconDrawable != null) {
+                int iconSize = Math.max(mIconDrawable.getIntrinsicWidth(), mIconDrawable.getIntrinsicHeight());
+                int iconOffsetHorizontal = (mTmpBounds.width() - (iconSize > 0 ? iconSize : mIconSize)) / 2;
+                int iconOffsetVertical = (mTmpBounds.height() - (iconSize > 0 ? iconSize : mIconSize)) / 2;
+                mTmpBounds.inset(iconOffsetHorizontal, iconOffsetVertical);
+                mIconDrawable.setBounds(mTmpBounds);
+            }
+        }
+
+        @Override
+        protected void onBoundsChange(Rect bounds) {
+            updateGeometry(bounds);
         }
 
         @Override
         public void draw(Canvas canvas) {
-            setBounds(circleInsetHorizontal, circleInsetVertical, calculateMeasuredWidth()
-                    - circleInsetHorizontal, calculateMeasuredHeight() - circleInsetVertical);
-            super.draw(canvas);
+            if (mShadowMask != null) {
+                canvas.drawBitmap(mShadowMask, mShadowLeft, mShadowTop, mShadowPaint);
+            }
+            canvas.drawOval(mCircleBounds, mFillPaint);
+            if (mRipple != null) {
+                mRipple.draw(canvas);
+            }
+            if (mIconDrawable != null) {
+                mIconDrawable.draw(canvas);
+            }
         }
-    }
 
-    private class Shadow extends Drawable {
+        @Override
+        public boolean isStateful() {
+            return true;
+        }
 
-        private Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        private Paint mErase = new Paint(Paint.ANTI_ALIAS_FLAG);
-        private float mRadius;
+        @Override
+        protected boolean onStateChange(int[] state) {
+            boolean pressed = false;
+            for (int s : state) {
+                if (s == android.R.attr.state_pressed) {
+                    pressed = true;
+                    break;
+                }
+            }
 
-        private Shadow() {
-            this.init();
+            boolean changed = false;
+            if (mRipple != null) {
+                changed = mRipple.setState(state);
+            }
+            if (mIconDrawable != null && mIconDrawable.isStateful()) {
+                changed |= mIconDrawable.setState(state);
+            }
+            if (mPressed != pressed) {
+                mPressed = pressed;
+                updateFillColor();
+                changed = true;
+            }
+            return changed;
         }
 
-        private void init() {
-            setLayerType(LAYER_TYPE_SOFTWARE, null);
-            mPaint.setStyle(Paint.Style.FILL);
-            mPaint.setColor(mColorNormal);
+        @Override
+        public boolean setVisible(boolean visible, boolean restart) {
+            if (mRipple != null) {
+                mRipple.setVisible(visible, restart);
+            }
+            if (mIconDrawable != null) {
+                mIconDrawable.setVisible(visible, restart);
+            }
+            return super.setVisible(visible, restart);
+        }
 
-            mErase.setXfermode(PORTER_DUFF_CLEAR);
+        @Override
+        public void jumpToCurrentState() {
+            if (mRipple != null) {
+                mRipple.jumpToCurrentState();
+            }
+            if (mIconDrawable != null && mIconDrawable.isStateful()) {
+                mIconDrawable.jumpToCurrentState();
+            }
+        }
 
-            if (!isInEditMode()) {
-                mPaint.setShadowLayer(mShadowRadius, mShadowXOffset, mShadowYOffset, mShadowColor);
+        @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+        @Override
+        public void setHotspot(float x, float y) {
+            if (mRipple != null) {
+                mRipple.setHotspot(x, y);
             }
+        }
 
-            mRadius = getCircleSize() / 2;
+        @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+        @Override
+        public void getOutline(Outline outline) {
+            mCircleBounds.round(mTmpBounds);
+            outline.setOval(mTmpBounds);
+            outline.setAlpha(mUsingNativeShadow ? calculateNativeShadowAlpha() : 1f);
+        }
+
+        @Override
+        public void setAlpha(int alpha) {
+            if (mAlpha != alpha) {
+                mAlpha = alpha;
+                mShadowPaint.setAlpha(Color.alpha(mShadowColor) * alpha / 255);
+                updateFillColor();
+                if (mIconDrawable != null) {
+                    mIconDrawable.setAlpha(alpha);
+                }
+                invalidateSelf();
+            }
+        }
 
-            if (mProgressBarEnabled && mShowProgressBackground) {
-                mRadius += mProgressWidth;
+        @Override
+        public void setColorFilter(ColorFilter cf) {
+            mFillPaint.setColorFilter(cf);
+            if (mIconDrawable != null) {
+                mIconDrawable.setColorFilter(cf);
             }
+            invalidateSelf();
         }
 
+        @Override
+        public int getOpacity() {
+            return PixelFormat.TRANSLUCENT;
+        }
+
+        @Override
+        public void invalidateDrawable(Drawable who) {
+            invalidateSelf();
+        }
+
+        @Override
+        public void scheduleDrawable(Drawable who, Runnable what, long when) {
+            scheduleSelf(what, when);
+        }
+
+        @Override
+        public void unscheduleDrawable(Drawable who, Runnable what) {
+            unscheduleSelf(what);
+        }
+    }
+
+    /**
+     * Draws the progress ring. Its bounds cover only the ring, so invalidating it while the progress
+     * animates leaves the background and the icon untouched.
+     */
+    private class ProgressDrawable extends Drawable {
+
         @Override
         public void draw(Canvas canvas) {
-            canvas.drawCircle(calculateCenterX(), calculateCenterY(), mRadius, mPaint);
-            canvas.drawCircle(calculateCenterX(), calculateCenterY(), mRadius, mErase);
+            if (mShowProgressBackground) {
+                canvas.drawArc(mProgressCircleBounds, 360, 360, false, mBackgroundPaint);
+            }
+
+            boolean shouldInvalidate = false;
+
+            if (mProgressIndeterminate) {
+                shouldInvalidate = true;
+
+                long deltaTime = SystemClock.uptimeMillis() - mLastTimeAnimated;
+                float deltaNormalized = deltaTime * mSpinSpeed / 1000.0f;
+
+                updateProgressLength(deltaTime);
+
+                mCurrentProgress += deltaNormalized;
+                if (mCurrentProgress > 360f) {
+                    mCurrentProgress -= 360f;
+                }
+
+                mLastTimeAnimated = SystemClock.uptimeMillis();
+                float from = mCurrentProgress - 90;
+                float to = mBarLength + mBarExtraLength;
+
+                if (isInEditMode()) {
+                    from = 0;
+                    to = 135;
+                }
+
+                canvas.drawArc(mProgressCircleBounds, from, to, false, mProgressPaint);
+            } else {
+                if (mCurrentProgress != mTargetProgress) {
+                    shouldInvalidate = true;
+                    float deltaTime = (float) (SystemClock.uptimeMillis() - mLastTimeAnimated) / 1000;
+                    float deltaNormalized = deltaTime * mSpinSpeed;
+
+                    if (mCurrentProgress > mTargetProgress) {
+                        mCurrentProgress = Math.max(mCurrentProgress - deltaNormalized, mTargetProgress);
+                    } else {
+                        mCurrentProgress = Math.min(mCurrentProgress + deltaNormalized, mTargetProgress);
+                    }
+                    mLastTimeAnimated = SystemClock.uptimeMillis();
+                }
+
+                canvas.drawArc(mProgressCircleBounds, -90, mCurrentProgress, false, mProgressPaint);
+            }
+
+            if (shouldInvalidate) {
+                scheduleProgressFrame(0);
+            }
         }
 
         @Override
@@ -698,7 +1120,7 @@ public class FloatingActionButton extends ImageButton {
 
         @Override
         public int getOpacity() {
-            return 0;
+            return PixelFormat.TRANSLUCENT;
         }
     }
 
@@ -893,7 +1315,6 @@ public class FloatingActionButton extends ImageButton {
         int shadowRadius = getResources().getDimensionPixelSize(dimenResId);
         if (mShadowRadius != shadowRadius) {
             mShadowRadius = shadowRadius;
-            requestLayout();
             updateBackground();
         }
     }
@@ -907,8 +1328,7 @@ public class FloatingActionButton extends ImageButton {
      * @param shadowRadiusDp shadow radius specified in density-independent (dp) pixels
      */
     public void setShadowRadius(float shadowRadiusDp) {
-        mShadowRadius = Util.dpToPx(getContext(), shadowRadiusDp);
-        requestLayout();
+        mShadowRadius = getMetrics().dpToPx(shadowRadiusDp);
         updateBackground();
     }
 
@@ -925,7 +1345,6 @@ public class FloatingActionButton extends ImageButton {
         int shadowXOffset = getResources().getDimensionPixelSize(dimenResId);
         if (mShadowXOffset != shadowXOffset) {
             mShadowXOffset = shadowXOffset;
-            requestLayout();
             updateBackground();
         }
     }
@@ -939,8 +1358,7 @@ public class FloatingActionButton extends ImageButton {
      * @param shadowXOffsetDp shadow radius specified in density-independent (dp) pixels
      */
     public void setShadowXOffset(float shadowXOffsetDp) {
-        mShadowXOffset = Util.dpToPx(getContext(), shadowXOffsetDp);
-        requestLayout();
+        mShadowXOffset = getMetrics().dpToPx(shadowXOffsetDp);
         updateBackground();
     }
 
@@ -957,7 +1375,6 @@ public class FloatingActionButton extends ImageButton {
         int shadowYOffset = getResources().getDimensionPixelSize(dimenResId);
         if (mShadowYOffset != shadowYOffset) {
             mShadowYOffset = shadowYOffset;
-            requestLayout();
             updateBackground();
         }
     }
@@ -971,8 +1388,7 @@ public class FloatingActionButton extends ImageButton {
      * @param shadowYOffsetDp shadow radius specified in density-independent (dp) pixels
      */
     public void setShadowYOffset(float shadowYOffsetDp) {
-        mShadowYOffset = Util.dpToPx(getContext(), shadowYOffsetDp);
-        requestLayout();
+        mShadowYOffset = getMetrics().dpToPx(shadowYOffsetDp);
         updateBackground();
     }
 
@@ -1000,42 +1416,94 @@ public class FloatingActionButton extends ImageButton {
     }
 
     /**
-     * Checks whether <b>FloatingActionButton</b> is hidden
+     * Starts a batch of property changes. None of the changes made through the returned
+     * {@link Editor} take effect until {@link Editor#apply()} is called, which rebuilds the
+     * background once and requests at most one layout pass.
+     *
+     * @return an {@link Editor} collecting the changes
+     */
+    public Editor edit() {
+        return new Editor();
+    }
+
+    /**
+     * Checks whether <b>FloatingActionButton</b> is hidden. A button which is playing its hide
+     * animation, or is about to, is already considered hidden.
      *
      * @return true if <b>FloatingActionButton</b> is hidden, false otherwise
      */
     public boolean isHidden() {
-        return getVisibility() == INVISIBLE;
+        return mVisibilityCallback.isPosted() ? mRequestedHidden : mShowHideAnimator.isHidden();
     }
 
     /**
-     * Makes the <b>FloatingActionButton</b> to appear and sets its visibility to {@link #VISIBLE}
+     * Makes the <b>FloatingActionButton</b> to appear and sets its visibility to {@link #VISIBLE}.
+     * If the hide animation is running, it is reversed from its current state.
+     *
+     * <p>Animated requests are resolved on the next frame, so any number of calls to
+     * {@link #show(boolean)} and {@link #hide(boolean)}, e.g. from a scroll listener, costs at
+     * most one animation per frame, and none if the button ends up in the state it is already
+     * heading to.</p>
      *
      * @param animate if true - plays "show animation"
      */
     public void show(boolean animate) {
-        if (isHidden()) {
-            if (animate) {
-                playShowAnimation();
-            }
-            setVisibility(VISIBLE);
-        }
+        requestHidden(false, animate);
     }
 
     /**
      * Makes the <b>FloatingActionButton</b> to disappear and sets its visibility to {@link #INVISIBLE}
+     * once the hide animation ends. If the show animation is running, it is reversed from its
+     * current state. Animated requests are resolved on the next frame, like {@link #show(boolean)}.
      *
      * @param animate if true - plays "hide animation"
      */
     public void hide(boolean animate) {
-        if (!isHidden()) {
-            if (animate) {
+        requestHidden(true, animate);
+    }
+
+    private void requestHidden(boolean hidden, boolean animate) {
+        if (!animate) {
+            mVisibilityCallback.cancel();
+            setHidden(hidden, false);
+            return;
+        }
+
+        mRequestedHidden = hidden;
+        if (hidden == mShowHideAnimator.isHidden()) {
+            mVisibilityCallback.cancel();
+        } else {
+            mVisibilityCallback.postFrame();
+        }
+    }
+
+    /**
+     * Shows or hides the button right away, unlike {@link #show(boolean)} and
+     * {@link #hide(boolean)}. Used by the menu, which schedules its items itself.
+     */
+    void setHidden(boolean hidden, boolean animate) {
+        if (hidden == mShowHideAnimator.isHidden()) return;
+
+        if (animate) {
+            if (hidden) {
                 playHideAnimation();
+            } else {
+                playShowAnimation();
+            }
+        } else {
+            mShowHideAnimator.cancel();
+            if (hidden) {
+                mShowHideAnimator.hide(null);
+            } else {
+                mShowHideAnimator.show(null);
             }
-            setVisibility(INVISIBLE);
         }
     }
 
+    public void setOnShowHideFinishedListener(OnShowHideFinishedListener listener) {
+        mShowHideFinishedListener = listener;
+    }
+
     public void toggle(boolean animate) {
         if (isHidden()) {
             show(animate);
@@ -1126,15 +1594,17 @@ public class FloatingActionButton extends ImageButton {
      * mode, the progress is ignored and the progress bar shows an infinite
      * animation instead.</p>
      *
+     * <p>Like all the other progress methods it must be called from the UI thread. Use
+     * {@link #bindProgress(AtomicInteger, boolean)} to report progress from a worker thread.</p>
+     *
      * @param indeterminate true to enable the indeterminate mode
      */
-    public synchronized void setIndeterminate(boolean indeterminate) {
+    public void setIndeterminate(boolean indeterminate) {
         if (!indeterminate) {
             mCurrentProgress = 0.0f;
         }
 
-        mProgressBarEnabled = indeterminate;
-        mShouldUpdateButtonPosition = true;
+        setProgressBarEnabled(indeterminate);
         mProgressIndeterminate = indeterminate;
         mLastTimeAnimated = SystemClock.uptimeMillis();
         setupProgressBounds();
@@ -1142,15 +1612,18 @@ public class FloatingActionButton extends ImageButton {
         updateBackground();
     }
 
-    public synchronized void setMax(int max) {
+    public void setMax(int max) {
         mProgressMax = max;
     }
 
-    public synchronized int getMax() {
+    public int getMax() {
         return mProgressMax;
     }
 
-    public synchronized void setProgress(int progress, boolean animate) {
+    public void setProgress(int progress, boolean animate) {
+        if (mProgressSource != null && mProgressSourceIdle.get()) {
+            resumeProgressSource();
+        }
         if (mProgressIndeterminate) return;
 
         mProgress = progress;
@@ -1161,11 +1634,12 @@ public class FloatingActionButton extends ImageButton {
             return;
         }
 
-        mProgressBarEnabled = true;
-        mShouldUpdateButtonPosition = true;
-        setupProgressBounds();
-        saveButtonOriginalPosition();
-        updateBackground();
+        if (!mProgressBarEnabled) {
+            setProgressBarEnabled(true);
+            setupProgressBounds();
+            saveButtonOriginalPosition();
+            updateBackground();
+        }
 
         if (progress < 0) {
             progress = 0;
@@ -1184,24 +1658,270 @@ public class FloatingActionButton extends ImageButton {
             mCurrentProgress = mTargetProgress;
         }
 
-        invalidate();
+        mProgressDrawable.invalidateSelf();
     }
 
-    public synchronized int getProgress() {
+    public int getProgress() {
         return mProgressIndeterminate ? 0 : mProgress;
     }
 
-    public synchronized void hideProgress() {
-        mProgressBarEnabled = false;
-        mShouldUpdateButtonPosition = true;
+    public void hideProgress() {
+        setProgressBarEnabled(false);
         updateBackground();
     }
 
-    public synchronized void setShowProgressBackground(boolean show) {
+    private void setProgressBarEnabled(boolean enabled) {
+        mProgressBarEnabled = enabled;
+        // with reserved space the circle doesn't move, so there's nothing to compensate
+        mShouldUpdateButtonPosition = !mProgressSpaceReserved;
+    }
+
+    /**
+     * Always reserves the space of the progress ring around the button, even while the progress
+     * is hidden. Showing or hiding the progress then only redraws the button instead of
+     * requesting a layout of its parent and moving the button to keep it in place.
+     *
+     * <p>Should be set before the progress is first shown, or with the
+     * {@code fab_progress_reserveSpace} attribute.</p>
+     *
+     * @param reserved true to reserve the space of the ring
+     */
+    public void setProgressSpaceReserved(boolean reserved) {
+        if (mProgressSpaceReserved != reserved) {
+            mProgressSpaceReserved = reserved;
+            setupProgressBounds();
+            updateBackground();
+        }
+    }
+
+    public boolean isProgressSpaceReserved() {
+        return mProgressSpaceReserved;
+    }
+
+    /**
+     * Binds the progress to a value which may be written from any thread, e.g. by a download
+     * worker. The value is sampled once per display frame while the button is visible, so any
+     * number of writes between two frames results in a single progress update and no message is
+     * posted to the UI thread per write.
+     *
+     * <p>Sampling stops once the value hasn't changed for a short while, or while the progress is
+     * hidden, so that an idle source doesn't keep the display running. Call
+     * {@link #notifyProgressChanged()} after writing the value to resume it.</p>
+     *
+     * @param source  the progress value, between 0 and {@link #getMax()}
+     * @param animate whether changes of the sampled value are animated
+     */
+    public void bindProgress(AtomicInteger source, boolean animate) {
+        mProgressSource = source;
+        mAnimateProgressSource = animate;
+        mSampledProgress = Integer.MIN_VALUE;
+        resumeProgressSource();
+    }
+
+    /**
+     * Resumes sampling the value set with {@link #bindProgress(AtomicInteger, boolean)} if it has
+     * stopped. May be called from any thread after every write: a message is only posted to the UI
+     * thread when sampling has to be resumed.
+     */
+    public void notifyProgressChanged() {
+        if (mProgressSourceIdle.compareAndSet(true, false)) {
+            post(mResumeProgressSource);
+        }
+    }
+
+    /**
+     * Stops sampling the value set with {@link #bindProgress(AtomicInteger, boolean)}. The current
+     * progress stays displayed until {@link #hideProgress()} is called.
+     */
+    public void unbindProgress() {
+        mProgressSource = null;
+        mProgressSourceCallback.cancel();
+    }
+
+    /**
+     * Limits the frame rate of the progress animation, e.g. to 30 fps while the device is in
+     * battery saver mode.
+     *
+     * @param framesPerSecond the maximum number of frames per second, or 0 to animate on every
+     *                        display frame
+     */
+    public void setProgressFrameRate(int framesPerSecond) {
+        mProgressFrameRate = Math.max(framesPerSecond, 0);
+    }
+
+    public int getProgressFrameRate() {
+        return mProgressFrameRate;
+    }
+
+    public void setShowProgressBackground(boolean show) {
         mShowProgressBackground = show;
     }
 
-    public synchronized boolean isProgressBackgroundShown() {
+    public boolean isProgressBackgroundShown() {
         return mShowProgressBackground;
     }
+
+    /**
+     * Collects changes to a <b>FloatingActionButton</b>'s appearance and applies them at once.
+     *
+     * @see #edit()
+     */
+    public final class Editor {
+
+        private static final int COLOR_NORMAL = 1;
+        private static final int COLOR_PRESSED = 1 << 1;
+        private static final int COLOR_RIPPLE = 1 << 2;
+        private static final int SHADOW_RADIUS = 1 << 3;
+        private static final int SHADOW_X_OFFSET = 1 << 4;
+        private static final int SHADOW_Y_OFFSET = 1 << 5;
+        private static final int SHADOW_COLOR = 1 << 6;
+        private static final int SHOW_SHADOW = 1 << 7;
+        private static final int BUTTON_SIZE = 1 << 8;
+
+        private int mChanges;
+        private int mColorNormal;
+        private int mColorPressed;
+        private int mColorRipple;
+        private int mShadowRadius;
+        private int mShadowXOffset;
+        private int mShadowYOffset;
+        private int mShadowColor;
+        private boolean mShowShadow;
+        private int mButtonSize;
+
+        private Editor() {
+        }
+
+        public Editor setColorNormal(int color) {
+            mColorNormal = color;
+            mChanges |= COLOR_NORMAL;
+            return this;
+        }
+
+        public Editor setColorNormalResId(int colorResId) {
+            return setColorNormal(getResources().getColor(colorResId));
+        }
+
+        public Editor setColorPressed(int color) {
+            mColorPressed = color;
+            mChanges |= COLOR_PRESSED;
+            return this;
+        }
+
+        public Editor setColorPressedResId(int colorResId) {
+            return setColorPressed(getResources().getColor(colorResId));
+        }
+
+        public Editor setColorRipple(int color) {
+            mColorRipple = color;
+            mChanges |= COLOR_RIPPLE;
+            return this;
+        }
+
+        public Editor setColorRippleResId(int colorResId) {
+            return setColorRipple(getResources().getColor(colorResId));
+        }
+
+        /**
+         * @param shadowRadiusDp shadow radius specified in density-independent (dp) pixels
+         */
+        public Editor setShadowRadius(float shadowRadiusDp) {
+            mShadowRadius = getMetrics().dpToPx(shadowRadiusDp);
+            mChanges |= SHADOW_RADIUS;
+            return this;
+        }
+
+        public Editor setShadowRadius(int dimenResId) {
+            mShadowRadius = getResources().getDimensionPixelSize(dimenResId);
+            mChanges |= SHADOW_RADIUS;
+            return this;
+        }
+
+        /**
+         * @param shadowXOffsetDp shadow x offset specified in density-independent (dp) pixels
+         */
+        public Editor setShadowXOffset(float shadowXOffsetDp) {
+            mShadowXOffset = getMetrics().dpToPx(shadowXOffsetDp);
+            mChanges |= SHADOW_X_OFFSET;
+            return this;
+        }
+
+        public Editor setShadowXOffset(int dimenResId) {
+            mShadowXOffset = getResources().getDimensionPixelSize(dimenResId);
+            mChanges |= SHADOW_X_OFFSET;
+            return this;
+        }
+
+        /**
+         * @param shadowYOffsetDp shadow y offset specified in density-independent (dp) pixels
+         */
+        public Editor setShadowYOffset(float shadowYOffsetDp) {
+            mShadowYOffset = getMetrics().dpToPx(shadowYOffsetDp);
+            mChanges |= SHADOW_Y_OFFSET;
+            return this;
+        }
+
+        public Editor setShadowYOffset(int dimenResId) {
+            mShadowYOffset = getResources().getDimensionPixelSize(dimenResId);
+            mChanges |= SHADOW_Y_OFFSET;
+            return this;
+        }
+
+        public Editor setShadowColor(int color) {
+            mShadowColor = color;
+            mChanges |= SHADOW_COLOR;
+            return this;
+        }
+
+        public Editor setShadowColorResource(int colorResId) {
+            return setShadowColor(getResources().getColor(colorResId));
+        }
+
+        public Editor setShowShadow(boolean show) {
+            mShowShadow = show;
+            mChanges |= SHOW_SHADOW;
+            return this;
+        }
+
+        /**
+         * @param size size of the <b>FloatingActionButton</b>. Accepted values: SIZE_NORMAL, SIZE_MINI.
+         */
+        public Editor setButtonSize(int size) {
+            if (size != SIZE_NORMAL && size != SIZE_MINI) {
+                throw new IllegalArgumentException("Use @FabSize constants only!");
+            }
+            mButtonSize = size;
+            mChanges |= BUTTON_SIZE;
+            return this;
+        }
+
+        /**
+         * Applies all the collected changes with a single background rebuild. A layout is
+         * requested only if the size of the <b>FloatingActionButton</b> has changed.
+         */
+        public void apply() {
+            FloatingActionButton fab = FloatingActionButton.this;
+            fab.beginBatchUpdate();
+            if ((mChanges & COLOR_NORMAL) != 0) fab.setColorNormal(mColorNormal);
+            if ((mChanges & COLOR_PRESSED) != 0) fab.setColorPressed(mColorPressed);
+            if ((mChanges & COLOR_RIPPLE) != 0) fab.setColorRipple(mColorRipple);
+            if ((mChanges & SHADOW_COLOR) != 0) fab.setShadowColor(mShadowColor);
+            if ((mChanges & SHOW_SHADOW) != 0) fab.setShowShadow(mShowShadow);
+            if ((mChanges & BUTTON_SIZE) != 0) fab.setButtonSize(mButtonSize);
+            if ((mChanges & SHADOW_RADIUS) != 0 && fab.mShadowRadius != mShadowRadius) {
+                fab.mShadowRadius = mShadowRadius;
+                fab.updateBackground();
+            }
+            if ((mChanges & SHADOW_X_OFFSET) != 0 && fab.mShadowXOffset != mShadowXOffset) {
+                fab.mShadowXOffset = mShadowXOffset;
+                fab.updateBackground();
+            }
+            if ((mChanges & SHADOW_Y_OFFSET) != 0 && fab.mShadowYOffset != mShadowYOffset) {
+                fab.mShadowYOffset = mShadowYOffset;
+                fab.updateBackground();
+            }
+            mChanges = 0;
+            fab.endBatchUpdate();
+        }
+    }
 }
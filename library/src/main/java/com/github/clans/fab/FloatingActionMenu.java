@@ -1,13 +1,14 @@
 package com.github.clans.fab;
 
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
 import android.animation.AnimatorSet;
 import android.animation.ObjectAnimator;
-import android.animation.ValueAnimator;
 import android.content.Context;
 import android.content.res.TypedArray;
 import android.graphics.Color;
 import android.graphics.drawable.Drawable;
-import android.os.Handler;
+import android.os.SystemClock;
 import android.text.TextUtils;
 import android.util.AttributeSet;
 import android.util.TypedValue;
@@ -15,14 +16,17 @@ import android.view.ContextThemeWrapper;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
 import android.view.animation.Animation;
-import android.view.animation.AnimationUtils;
 import android.view.animation.AnticipateInterpolator;
 import android.view.animation.Interpolator;
 import android.view.animation.OvershootInterpolator;
 import android.widget.ImageView;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class FloatingActionMenu extends ViewGroup {
 
     private static final int ANIMATION_DURATION = 300;
@@ -38,27 +42,40 @@ public class FloatingActionMenu extends ViewGroup {
 
     private AnimatorSet mOpenAnimatorSet = new AnimatorSet();
     private AnimatorSet mCloseAnimatorSet = new AnimatorSet();
+    private ObjectAnimator mExpandAnimator;
+    private ObjectAnimator mCollapseAnimator;
+    private long mIconAnimationDuration = ANIMATION_DURATION;
     private AnimatorSet mIconToggleSet;
 
-    private int mButtonSpacing = Util.dpToPx(getContext(), 0f);
-    private int mInitialButtonsOffset = Util.dpToPx(getContext(), 0f);
+    private final FabMetrics mMetrics = FabMetrics.get(getContext());
+    private int mButtonSpacing = 0;
+    private int mInitialButtonsOffset = 0;
     private FloatingActionButton mMenuButton;
     private String mMenuButtonLabelText;
     private int mMaxButtonWidth;
-    private int mLabelsMargin = Util.dpToPx(getContext(), 0f);
-    private int mLabelsVerticalOffset = Util.dpToPx(getContext(), 0f);
+    private boolean mMeasureCached;
+    private int mCachedWidthMeasureSpec;
+    private int mCachedHeightMeasureSpec;
+    private int mCachedChildCount;
+    private int mCachedPaddingHorizontal;
+    private int mCachedPaddingVertical;
+    private int mCachedLayoutWidth;
+    private int mCachedLayoutHeight;
+    private int mCachedWidth;
+    private int mCachedHeight;
+    private int mLabelsMargin = 0;
+    private int mLabelsVerticalOffset = 0;
     private int mButtonsCount;
     private boolean mMenuOpened;
-    private Handler mUiHandler = new Handler();
     private int mLabelsShowAnimation;
     private int mLabelsHideAnimation;
-    private int mLabelsPaddingTop = Util.dpToPx(getContext(), 4f);
-    private int mLabelsPaddingRight = Util.dpToPx(getContext(), 8f);
-    private int mLabelsPaddingBottom = Util.dpToPx(getContext(), 4f);
-    private int mLabelsPaddingLeft = Util.dpToPx(getContext(), 8f);
+    private int mLabelsPaddingTop = mMetrics.labelsPaddingVertical;
+    private int mLabelsPaddingRight = mMetrics.labelsPaddingHorizontal;
+    private int mLabelsPaddingBottom = mMetrics.labelsPaddingVertical;
+    private int mLabelsPaddingLeft = mMetrics.labelsPaddingHorizontal;
     private int mLabelsTextColor;
     private float mLabelsTextSize;
-    private int mLabelsCornerRadius = Util.dpToPx(getContext(), 3f);
+    private int mLabelsCornerRadius = mMetrics.labelsCornerRadius;
     private boolean mLabelsShowShadow;
     private int mLabelsColorNormal;
     private int mLabelsColorPressed;
@@ -73,6 +90,12 @@ public class FloatingActionMenu extends ViewGroup {
     private int mMenuColorRipple;
     private Drawable mIcon;
     private int mAnimationDelayPerItem;
+    private int mAnimationTotalDuration;
+    private boolean mUseHardwareLayers;
+    private final ArrayList<View> mLayerViews = new ArrayList<View>();
+    private int mUpdateDepth;
+    private boolean mItemsChanged;
+    private final ArrayList<FloatingActionButton> mAddedItems = new ArrayList<FloatingActionButton>();
     private Interpolator mOpenInterpolator;
     private Interpolator mCloseInterpolator;
     private boolean mIsAnimated = true;
@@ -83,26 +106,113 @@ public class FloatingActionMenu extends ViewGroup {
     private int mLabelsStyle;
     private boolean mIconAnimated = true;
     private ImageView mImageToggle;
+    private ShowHideAnimator mImageToggleAnimator;
     private Animation mMenuButtonShowAnimation;
     private Animation mMenuButtonHideAnimation;
-    private boolean mIsMenuButtonAnimationRunning;
+    private boolean mMenuButtonHidePending;
+    private boolean mMenuButtonHideAnimate;
+    private boolean mRequestedMenuButtonHidden;
+    private final FrameCallbackCompat mMenuButtonCallback = new FrameCallbackCompat() {
+        @Override
+        void doFrame(long frameTimeNanos) {
+            setMenuButtonHidden(mRequestedMenuButtonHidden, true);
+        }
+    };
     private boolean mIsSetClosedOnTouchOutside;
     private int mOpenDirection;
     private OnMenuToggleListener mToggleListener;
+    private OnMenuToggleFinishedListener mToggleFinishedListener;
+    private boolean mToggleFinishPending;
+    private boolean mToggling;
+    private final AnimatorListenerAdapter mToggleAnimatorListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            checkToggleFinished();
+        }
+    };
+    private final AnimatorListenerAdapter mDimAnimatorListener = new AnimatorListenerAdapter() {
+        @Override
+        public void onAnimationEnd(Animator animation) {
+            // a fade cancelled midway is followed by the one which replaced it
+            if (Math.abs(mDimView.getAlpha() - mDimTargetAlpha) > 0.001f) return;
+
+            mDimAnimating = false;
+            if (mDimTargetAlpha == 0) {
+                mDimView.setVisibility(INVISIBLE);
+            }
+            checkToggleFinished();
+        }
+    };
 
-    private ValueAnimator mShowBackgroundAnimator;
-    private ValueAnimator mHideBackgroundAnimator;
+    private View mDimView;
+    private float mDimTargetAlpha;
+    private boolean mDimAnimating;
     private int mBackgroundColor;
 
     private int mLabelsPosition;
 
+    private boolean mStaggerOpening;
+    private boolean mStaggerAnimate;
+    private int mStaggerDelay;
+    private long mStaggerStartTime;
+    private int mStaggerAppliedCount;
+    private boolean mStaggerAwaitingLayout;
+    private final FrameCallbackCompat mStaggerCallback = new FrameCallbackCompat() {
+        @Override
+        void doFrame(long frameTimeNanos) {
+            onStaggerFrame();
+        }
+    };
+
     private OnClickListener mOnOpenMenuButtonClickListener;
     private boolean mAnimateOnCloseIfActiveMenuButtonClickListener = true;
 
+    private OnMenuItemClickListener mMenuItemClickListener;
+    private ArrayList<Item> mItems;
+    private int mMaxVisibleItems;
+    private int mFirstVisibleItem = Integer.MAX_VALUE;
+    private boolean mItemsCreated = true;
+    private final ArrayList<FloatingActionButton> mItemButtons = new ArrayList<FloatingActionButton>();
+    private final ArrayList<FloatingActionButton> mScrapButtons = new ArrayList<FloatingActionButton>();
+    private int mItemColorNormal;
+    private int mItemColorPressed;
+    private int mItemColorRipple;
+    private final int mTouchSlop = ViewConfiguration.get(getContext()).getScaledTouchSlop();
+    private boolean mItemsDragging;
+    private float mItemsDragLastY;
+    private float mItemsDragOffset;
+    private final OnClickListener mItemClickListener = new OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            Item item = (Item) v.getTag(R.id.fab_item);
+            if (mMenuItemClickListener != null && item != null) {
+                mMenuItemClickListener.onMenuItemClick(item.getId());
+            }
+        }
+    };
+
+    public interface OnMenuItemClickListener {
+        /**
+         * Called when the button or label of an item bound through {@link #setItems(List)} is
+         * clicked.
+         *
+         * @param id the id of the clicked item
+         */
+        void onMenuItemClick(int id);
+    }
+
     public interface OnMenuToggleListener {
         void onMenuToggle(boolean opened);
     }
 
+    public interface OnMenuToggleFinishedListener {
+        /**
+         * Called when all the items, labels, the background and the icon have finished animating
+         * after the menu was opened or closed. A toggle interrupted by the next one isn't reported.
+         */
+        void onMenuToggleFinished(boolean opened);
+    }
+
     public FloatingActionMenu(Context context) {
         this(context, null);
     }
@@ -131,7 +241,7 @@ public class FloatingActionMenu extends ViewGroup {
         mLabelsPaddingBottom = attr.getDimensionPixelSize(R.styleable.FloatingActionMenu_menu_labels_paddingBottom, mLabelsPaddingBottom);
         mLabelsPaddingLeft = attr.getDimensionPixelSize(R.styleable.FloatingActionMenu_menu_labels_paddingLeft, mLabelsPaddingLeft);
         mLabelsTextColor = attr.getColor(R.styleable.FloatingActionMenu_menu_labels_textColor, Color.WHITE);
-        mLabelsTextSize = attr.getDimension(R.styleable.FloatingActionMenu_menu_labels_textSize, getResources().getDimension(R.dimen.labels_text_size));
+        mLabelsTextSize = attr.getDimension(R.styleable.FloatingActionMenu_menu_labels_textSize, mMetrics.labelsTextSize);
         mLabelsCornerRadius = attr.getDimensionPixelSize(R.styleable.FloatingActionMenu_menu_labels_cornerRadius, mLabelsCornerRadius);
         mLabelsShowShadow = attr.getBoolean(R.styleable.FloatingActionMenu_menu_labels_showShadow, true);
         mLabelsColorNormal = attr.getColor(R.styleable.FloatingActionMenu_menu_labels_colorNormal, 0xFF333333);
@@ -146,6 +256,10 @@ public class FloatingActionMenu extends ViewGroup {
         mMenuColorPressed = attr.getColor(R.styleable.FloatingActionMenu_menu_colorPressed, 0xFFE75043);
         mMenuColorRipple = attr.getColor(R.styleable.FloatingActionMenu_menu_colorRipple, 0x99FFFFFF);
         mAnimationDelayPerItem = attr.getInt(R.styleable.FloatingActionMenu_menu_animationDelayPerItem, 50);
+        mAnimationTotalDuration = attr.getInt(R.styleable.FloatingActionMenu_menu_animationTotalDuration, 0);
+        mMaxVisibleItems = attr.getInt(R.styleable.FloatingActionMenu_menu_maxVisibleItems, 0);
+        mItemsCreated = !attr.getBoolean(R.styleable.FloatingActionMenu_menu_lazyItems, false);
+        mUseHardwareLayers = attr.getBoolean(R.styleable.FloatingActionMenu_menu_useHardwareLayers, false);
         mIcon = attr.getDrawable(R.styleable.FloatingActionMenu_menu_icon);
         if (mIcon == null) {
             mIcon = getResources().getDrawable(R.drawable.fab_add);
@@ -170,40 +284,48 @@ public class FloatingActionMenu extends ViewGroup {
         mCloseInterpolator = new AnticipateInterpolator();
 
         initMenuButtonAnimations();
-        initBackgroundDimAnimation();
+        initBackgroundDim();
         createMenuButton();
     }
 
     private void initMenuButtonAnimations() {
-        mMenuButtonShowAnimation = AnimationUtils.loadAnimation(getContext(), R.anim.fab_scale_up);
-        mMenuButtonHideAnimation = AnimationUtils.loadAnimation(getContext(), R.anim.fab_scale_down);
+        mMenuButtonShowAnimation = AnimationCache.obtain(getContext(), R.anim.fab_scale_up);
+        mMenuButtonHideAnimation = AnimationCache.obtain(getContext(), R.anim.fab_scale_down);
     }
 
-    private void initBackgroundDimAnimation() {
-        final int maxAlpha = Color.alpha(mBackgroundColor);
-        final int red = Color.red(mBackgroundColor);
-        final int green = Color.green(mBackgroundColor);
-        final int blue = Color.blue(mBackgroundColor);
-
-        mShowBackgroundAnimator = ValueAnimator.ofInt(0, maxAlpha);
-        mShowBackgroundAnimator.setDuration(ANIMATION_DURATION);
-        mShowBackgroundAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                Integer alpha = (Integer) animation.getAnimatedValue();
-                setBackgroundColor(Color.argb(alpha, red, green, blue));
-            }
-        });
+    /**
+     * The dim is an opaque view behind the buttons whose alpha is animated, which only updates a
+     * property of its display list instead of redrawing the menu. It is invisible while the menu
+     * is closed, so it adds no overdraw.
+     */
+    private void initBackgroundDim() {
+        if (!isBackgroundEnabled()) return;
+
+        mDimView = new DimView(getContext());
+        mDimView.setBackgroundColor(mBackgroundColor | 0xFF000000);
+        mDimView.setAlpha(0f);
+        mDimView.setVisibility(INVISIBLE);
+        addView(mDimView, 0, new MarginLayoutParams(MarginLayoutParams.MATCH_PARENT,
+                MarginLayoutParams.MATCH_PARENT));
+    }
 
-        mHideBackgroundAnimator = ValueAnimator.ofInt(maxAlpha, 0);
-        mHideBackgroundAnimator.setDuration(ANIMATION_DURATION);
-        mHideBackgroundAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
-            @Override
-            public void onAnimationUpdate(ValueAnimator animation) {
-                Integer alpha = (Integer) animation.getAnimatedValue();
-                setBackgroundColor(Color.argb(alpha, red, green, blue));
-            }
-        });
+    /**
+     * Fades the background dim in or out, continuing from its current alpha if it is still
+     * animating.
+     */
+    private void animateBackgroundDim(boolean show) {
+        float maxAlpha = Color.alpha(mBackgroundColor) / 255f;
+        float alpha = mDimView.getAlpha();
+        mDimTargetAlpha = show ? maxAlpha : 0f;
+        mDimAnimating = true;
+
+        mDimView.setVisibility(VISIBLE);
+        mDimView.animate()
+                .alpha(mDimTargetAlpha)
+                .setDuration(maxAlpha > 0
+                        ? (long) (getBudgetedDuration(ANIMATION_DURATION) * Math.abs(mDimTargetAlpha - alpha) / maxAlpha)
+                        : 0)
+                .setListener(mDimAnimatorListener);
     }
 
     private boolean isBackgroundEnabled() {
@@ -222,9 +344,9 @@ public class FloatingActionMenu extends ViewGroup {
 
         mMenuButton.mShowShadow = mMenuShowShadow;
         if (mMenuShowShadow) {
-            mMenuButton.mShadowRadius = Util.dpToPx(getContext(), mMenuShadowRadius);
-            mMenuButton.mShadowXOffset = Util.dpToPx(getContext(), mMenuShadowXOffset);
-            mMenuButton.mShadowYOffset = Util.dpToPx(getContext(), mMenuShadowYOffset);
+            mMenuButton.mShadowRadius = mMetrics.dpToPx(mMenuShadowRadius);
+            mMenuButton.mShadowXOffset = mMetrics.dpToPx(mMenuShadowXOffset);
+            mMenuButton.mShadowYOffset = mMetrics.dpToPx(mMenuShadowYOffset);
         }
         mMenuButton.setColors(mMenuColorNormal, mMenuColorPressed, mMenuColorRipple);
         mMenuButton.mShadowColor = mMenuShadowColor;
@@ -247,6 +369,7 @@ public class FloatingActionMenu extends ViewGroup {
 
         mImageToggle = new ImageView(getContext());
         mImageToggle.setImageDrawable(mIcon);
+        mImageToggleAnimator = new ShowHideAnimator(mImageToggle, null);
 
         addView(mMenuButton, super.generateDefaultLayoutParams());
         addView(mImageToggle);
@@ -255,21 +378,23 @@ public class FloatingActionMenu extends ViewGroup {
     }
 
     private void createDefaultIconAnimation() {
-        ObjectAnimator collapseAnimator = ObjectAnimator.ofFloat(
+        mCollapseAnimator = ObjectAnimator.ofFloat(
                 mImageToggle,
                 "rotation",
-                mLabelsPosition == LABELS_POSITION_LEFT ? OPENED_PLUS_ROTATION_LEFT : OPENED_PLUS_ROTATION_RIGHT,
+                getOpenedRotation(),
                 CLOSED_PLUS_ROTATION
         );
 
-        ObjectAnimator expandAnimator = ObjectAnimator.ofFloat(
+        mExpandAnimator = ObjectAnimator.ofFloat(
                 mImageToggle,
                 "rotation",
                 CLOSED_PLUS_ROTATION,
-                mLabelsPosition == LABELS_POSITION_LEFT ? OPENED_PLUS_ROTATION_LEFT : OPENED_PLUS_ROTATION_RIGHT);
+                getOpenedRotation());
 
-        mOpenAnimatorSet.play(expandAnimator);
-        mCloseAnimatorSet.play(collapseAnimator);
+        mOpenAnimatorSet.play(mExpandAnimator);
+        mCloseAnimatorSet.play(mCollapseAnimator);
+        mOpenAnimatorSet.addListener(mToggleAnimatorListener);
+        mCloseAnimatorSet.addListener(mToggleAnimatorListener);
 
         mOpenAnimatorSet.setInterpolator(mOpenInterpolator);
         mCloseAnimatorSet.setInterpolator(mCloseInterpolator);
@@ -278,8 +403,30 @@ public class FloatingActionMenu extends ViewGroup {
         mCloseAnimatorSet.setDuration(ANIMATION_DURATION);
     }
 
+    private float getOpenedRotation() {
+        return mLabelsPosition == LABELS_POSITION_LEFT ? OPENED_PLUS_ROTATION_LEFT : OPENED_PLUS_ROTATION_RIGHT;
+    }
+
+    /**
+     * Rotates the menu icon from its current rotation, so that toggling the menu while the icon
+     * is turning sends it back from where it is. The duration is shortened accordingly.
+     */
+    private void animateIcon(AnimatorSet animatorSet, ObjectAnimator animator, float targetRotation) {
+        float rotation = mImageToggle.getRotation();
+        float remaining = Math.abs(targetRotation - rotation) / Math.abs(getOpenedRotation() - CLOSED_PLUS_ROTATION);
+
+        animator.setFloatValues(rotation, targetRotation);
+        animatorSet.setDuration((long) (getBudgetedDuration(mIconAnimationDuration) * Math.min(remaining, 1f)));
+        animatorSet.start();
+    }
+
     @Override
     protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        if (isMeasureCacheValid(widthMeasureSpec, heightMeasureSpec)) {
+            setMeasuredDimension(mCachedWidth, mCachedHeight);
+            return;
+        }
+
         int width = 0;
         int height = 0;
         int maxLabelWidth = 0;
@@ -291,7 +438,7 @@ public class FloatingActionMenu extends ViewGroup {
         for (int i = 0; i < mButtonsCount; i++) {
             View child = getChildAt(i);
 
-            if (child.getVisibility() == GONE || child == mImageToggle) continue;
+            if (child.getVisibility() == GONE || child == mImageToggle || child == mDimView) continue;
 
             measureChildWithMargins(child, widthMeasureSpec, 0, heightMeasureSpec, 0);
             mMaxButtonWidth = Math.max(mMaxButtonWidth, child.getMeasuredWidth());
@@ -301,7 +448,7 @@ public class FloatingActionMenu extends ViewGroup {
             int usedWidth = 0;
             View child = getChildAt(i);
 
-            if (child.getVisibility() == GONE || child == mImageToggle) continue;
+            if (child.getVisibility() == GONE || child == mImageToggle || child == mDimView) continue;
 
             usedWidth += child.getMeasuredWidth();
             height += child.getMeasuredHeight();
@@ -318,7 +465,8 @@ public class FloatingActionMenu extends ViewGroup {
 
         width = Math.max(mMaxButtonWidth, maxLabelWidth + mLabelsMargin) + getPaddingLeft() + getPaddingRight();
 
-        height += mInitialButtonsOffset + mButtonSpacing * (getChildCount() - 1) + getPaddingTop() + getPaddingBottom();
+        int spacedChildCount = mDimView != null ? getChildCount() - 1 : getChildCount();
+        height += mInitialButtonsOffset + mButtonSpacing * (spacedChildCount - 1) + getPaddingTop() + getPaddingBottom();
         height = adjustForOvershoot(height);
 
 
@@ -331,10 +479,54 @@ public class FloatingActionMenu extends ViewGroup {
         }
 
         setMeasuredDimension(width, height);
+
+        if (mDimView != null) {
+            mDimView.measure(MeasureSpec.makeMeasureSpec(width, MeasureSpec.EXACTLY),
+                    MeasureSpec.makeMeasureSpec(height, MeasureSpec.EXACTLY));
+        }
+
+        mMeasureCached = true;
+        mCachedWidthMeasureSpec = widthMeasureSpec;
+        mCachedHeightMeasureSpec = heightMeasureSpec;
+        mCachedChildCount = getChildCount();
+        mCachedPaddingHorizontal = getPaddingLeft() + getPaddingRight();
+        mCachedPaddingVertical = getPaddingTop() + getPaddingBottom();
+        mCachedLayoutWidth = getLayoutParams().width;
+        mCachedLayoutHeight = getLayoutParams().height;
+        mCachedWidth = width;
+        mCachedHeight = height;
+    }
+
+    /**
+     * Returns whether the last measurement still holds: the menu is measured with the same specs,
+     * padding and layout size, and none of its children has been added, removed or has requested a layout
+     * since, e.g. for a new label text, size or visibility. Children which did are measured again
+     * by a full pass, while {@link View#measure(int, int)} skips the others as long as their own
+     * specs don't change.
+     */
+    private boolean isMeasureCacheValid(int widthMeasureSpec, int heightMeasureSpec) {
+        if (!mMeasureCached || widthMeasureSpec != mCachedWidthMeasureSpec
+                || heightMeasureSpec != mCachedHeightMeasureSpec
+                || getChildCount() != mCachedChildCount
+                || getPaddingLeft() + getPaddingRight() != mCachedPaddingHorizontal
+                || getPaddingTop() + getPaddingBottom() != mCachedPaddingVertical
+                || getLayoutParams().width != mCachedLayoutWidth
+                || getLayoutParams().height != mCachedLayoutHeight) {
+            return false;
+        }
+
+        for (int i = 0; i < getChildCount(); i++) {
+            if (getChildAt(i).isLayoutRequested()) return false;
+        }
+        return true;
     }
 
     @Override
     protected void onLayout(boolean changed, int l, int t, int r, int b) {
+        if (mDimView != null) {
+            mDimView.layout(0, 0, r - l, b - t);
+        }
+
         int buttonsHorizontalCenter = mLabelsPosition == LABELS_POSITION_LEFT
                 ? r - l - mMaxButtonWidth / 2 - getPaddingRight()
                 : mMaxButtonWidth / 2 + getPaddingLeft();
@@ -382,16 +574,12 @@ public class FloatingActionMenu extends ViewGroup {
                     - label.getMeasuredHeight()) / 2;
 
             label.layout(labelLeft, labelTop, labelRight, labelTop + label.getMeasuredHeight());
-
-            if (!mMenuOpened) {
-                label.setVisibility(INVISIBLE);
-            }
         }
 
         for (int i = mButtonsCount - 1; i >= 0; i--) {
             View child = getChildAt(i);
 
-            if (child == mImageToggle) continue;
+            if (child == mImageToggle || child == mDimView) continue;
 
             FloatingActionButton fab = (FloatingActionButton) child;
 
@@ -402,10 +590,6 @@ public class FloatingActionMenu extends ViewGroup {
             fab.layout(childX, childY, childX + fab.getMeasuredWidth(),
                     childY + fab.getMeasuredHeight());
 
-            if (!mMenuOpened) {
-                fab.hide(false);
-            }
-
             label = (View) fab.getTag(R.id.fab_label);
             if (label != null) {
                 int labelsOffset = fab.getMeasuredWidth() / 2 + mLabelsMargin;
@@ -429,16 +613,16 @@ public class FloatingActionMenu extends ViewGroup {
                         - label.getMeasuredHeight()) / 2;
 
                 label.layout(labelLeft, labelTop, labelRight, labelTop + label.getMeasuredHeight());
-
-                if (!mMenuOpened) {
-                    label.setVisibility(INVISIBLE);
-                }
             }
 
             nextY = openUp
                     ? childY - mButtonSpacing
                     : childY + child.getMeasuredHeight() + mButtonSpacing;
         }
+
+        if (mStaggerAwaitingLayout) {
+            startStagger(true, true);
+        }
     }
 
     private int adjustForOvershoot(int dimension) {
@@ -452,6 +636,29 @@ public class FloatingActionMenu extends ViewGroup {
         bringChildToFront(mImageToggle);
         mButtonsCount = getChildCount();
         createLabels();
+
+        for (int i = 0; i < mButtonsCount; i++) {
+            View child = getChildAt(i);
+            if (child instanceof FloatingActionButton) {
+                applyClosedState((FloatingActionButton) child);
+            }
+        }
+    }
+
+    /**
+     * Hides an item of a closed menu. Items only change visibility when they are added and when
+     * the menu is toggled, so that laying out the menu never touches them.
+     */
+    private void applyClosedState(FloatingActionButton fab) {
+        if (mMenuOpened) return;
+
+        if (fab != mMenuButton) {
+            fab.setHidden(true, false);
+        }
+        Label label = (Label) fab.getTag(R.id.fab_label);
+        if (label != null) {
+            label.hide(false);
+        }
     }
 
     private void createLabels() {
@@ -459,61 +666,74 @@ public class FloatingActionMenu extends ViewGroup {
 
         for (int i = 0; i < mButtonsCount; i++) {
 
-            if (getChildAt(i) == mImageToggle) continue;
+            if (getChildAt(i) == mImageToggle || getChildAt(i) == mDimView) continue;
 
-            final FloatingActionButton fab = (FloatingActionButton) getChildAt(i);
-            String text = fab.getLabelText();
+            createLabel(context, (FloatingActionButton) getChildAt(i));
+        }
+    }
 
-            if (TextUtils.isEmpty(text) || fab.getTag(R.id.fab_label) != null) {
-                continue;
-            }
+    private void createLabel(Context context, FloatingActionButton fab) {
+        String text = fab.getLabelText();
 
-            final Label label = new Label(context);
-            label.setFab(fab);
-            label.setShowAnimation(AnimationUtils.loadAnimation(getContext(), mLabelsShowAnimation));
-            label.setHideAnimation(AnimationUtils.loadAnimation(getContext(), mLabelsHideAnimation));
+        if (!mItemsCreated || TextUtils.isEmpty(text) || fab.getTag(R.id.fab_label) != null) {
+            return;
+        }
 
-            if (mLabelsStyle > 0) {
-                label.setTextAppearance(getContext(), mLabelsStyle);
-                label.setShowShadow(false);
-                label.setUsingStyle(true);
-            } else {
-                label.setColors(mLabelsColorNormal, mLabelsColorPressed, mLabelsColorRipple);
-                label.setShowShadow(mLabelsShowShadow);
-                label.setCornerRadius(mLabelsCornerRadius);
-                if (mLabelsEllipsize > 0) {
-                    setLabelEllipsize(label);
-                }
-                label.setMaxLines(mLabelsMaxLines);
-                label.updateBackground();
+        Label label = new Label(context);
+        label.setFab(fab);
+        label.setShowAnimation(AnimationCache.obtain(getContext(), mLabelsShowAnimation));
+        label.setHideAnimation(AnimationCache.obtain(getContext(), mLabelsHideAnimation));
 
-                label.setTextSize(TypedValue.COMPLEX_UNIT_PX, mLabelsTextSize);
-                label.setTextColor(mLabelsTextColor);
+        if (mLabelsStyle > 0) {
+            label.setTextAppearance(getContext(), mLabelsStyle);
+            label.setShowShadow(false);
+            label.setUsingStyle(true);
+        } else {
+            label.setColors(mLabelsColorNormal, mLabelsColorPressed, mLabelsColorRipple);
+            label.setShowShadow(mLabelsShowShadow);
+            label.setCornerRadius(mLabelsCornerRadius);
+            if (mLabelsEllipsize > 0) {
+                setLabelEllipsize(label);
+            }
+            label.setMaxLines(mLabelsMaxLines);
+            label.updateBackground();
 
-                int left = mLabelsPaddingLeft;
-                int top = mLabelsPaddingTop;
-                if (mLabelsShowShadow) {
-                    left += fab.getShadowRadius() + Math.abs(fab.getShadowXOffset());
-                    top += fab.getShadowRadius() + Math.abs(fab.getShadowYOffset());
-                }
+            label.setTextSize(TypedValue.COMPLEX_UNIT_PX, mLabelsTextSize);
+            label.setTextColor(mLabelsTextColor);
+
+            int left = mLabelsPaddingLeft;
+            int top = mLabelsPaddingTop;
+            if (mLabelsShowShadow) {
+                left += fab.getShadowRadius() + Math.abs(fab.getShadowXOffset());
+                top += fab.getShadowRadius() + Math.abs(fab.getShadowYOffset());
+            }
 
-                label.setPadding(
-                        left,
-                        top,
-                        mLabelsPaddingLeft,
-                        mLabelsPaddingTop
-                );
+            label.setPadding(
+                    left,
+                    top,
+                    mLabelsPaddingLeft,
+                    mLabelsPaddingTop
+            );
 
-                if (mLabelsMaxLines < 0 || mLabelsSingleLine) {
-                    label.setSingleLine(mLabelsSingleLine);
-                }
+            if (mLabelsMaxLines < 0 || mLabelsSingleLine) {
+                label.setSingleLine(mLabelsSingleLine);
             }
+        }
 
-            label.setText(text);
+        label.setText(text);
 
+        if (mUpdateDepth > 0) {
+            addViewInLayout(label, -1, generateDefaultLayoutParams());
+            mItemsChanged = true;
+        } else {
             addView(label);
-            fab.setTag(R.id.fab_label, label);
         }
+        fab.setTag(R.id.fab_label, label);
+        // a click listener set before the label existed has to forward its clicks too
+        if (fab.getOnClickListener() != null) {
+            fab.setOnClickListener(fab.getOnClickListener());
+        }
+        applyClosedState(fab);
     }
 
     private void setLabelEllipsize(Label label) {
@@ -555,28 +775,85 @@ public class FloatingActionMenu extends ViewGroup {
     }
 
     private void hideMenuButtonWithImage(boolean animate) {
-        if (!isMenuButtonHidden()) {
-            mMenuButton.hide(animate);
-            if (animate) {
-                mImageToggle.startAnimation(mMenuButtonHideAnimation);
+        if (!mMenuButton.isHidden()) {
+            mMenuButton.setHidden(true, animate);
+            if (!animate) {
+                mImageToggleAnimator.cancel();
             }
-            mImageToggle.setVisibility(INVISIBLE);
-            mIsMenuButtonAnimationRunning = false;
+            mImageToggleAnimator.hide(animate ? mMenuButtonHideAnimation : null);
         }
     }
 
     private void showMenuButtonWithImage(boolean animate) {
-        if (isMenuButtonHidden()) {
-            mMenuButton.show(animate);
-            if (animate) {
-                mImageToggle.startAnimation(mMenuButtonShowAnimation);
+        if (mMenuButton.isHidden()) {
+            mMenuButton.setHidden(false, animate);
+            if (!animate) {
+                mImageToggleAnimator.cancel();
             }
-            mImageToggle.setVisibility(VISIBLE);
+            mImageToggleAnimator.show(animate ? mMenuButtonShowAnimation : null);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        if (mMenuButtonCallback.isPosted()) {
+            mMenuButtonCallback.cancel();
+            setMenuButtonHidden(mRequestedMenuButtonHidden, false);
+        }
+        mImageToggleAnimator.cancel();
+        if (mStaggerCallback.isPosted()) {
+            // there are no more frames to wait for, so settle the pending items right away
+            mStaggerCallback.cancel();
+            mStaggerAnimate = false;
+            onStaggerFrame();
         }
+        releaseItemLayers();
+    }
+
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent event) {
+        if (!isItemWindowScrollable()) return false;
+
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mItemsDragging = false;
+                mItemsDragLastY = event.getY();
+                mItemsDragOffset = 0;
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (!mItemsDragging && Math.abs(event.getY() - mItemsDragLastY) > mTouchSlop) {
+                    mItemsDragging = true;
+                    mItemsDragLastY = event.getY();
+                    if (getParent() != null) {
+                        getParent().requestDisallowInterceptTouchEvent(true);
+                    }
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                mItemsDragging = false;
+                break;
+        }
+        return mItemsDragging;
     }
 
     @Override
     public boolean onTouchEvent(MotionEvent event) {
+        if (mItemsDragging) {
+            switch (event.getActionMasked()) {
+                case MotionEvent.ACTION_MOVE:
+                    dragItemWindow(event.getY() - mItemsDragLastY);
+                    mItemsDragLastY = event.getY();
+                    break;
+                case MotionEvent.ACTION_UP:
+                case MotionEvent.ACTION_CANCEL:
+                    mItemsDragging = false;
+                    break;
+            }
+            return true;
+        }
+
         if (mIsSetClosedOnTouchOutside) {
             return mGestureDetector.onTouchEvent(event);
         } else {
@@ -613,10 +890,20 @@ public class FloatingActionMenu extends ViewGroup {
         }
     }
 
-    public void open(final boolean animate) {
+    public void open(boolean animate) {
         if (!isOpened()) {
+            boolean itemsCreated = !mItemsCreated;
+            if (itemsCreated) {
+                prewarm();
+            }
+
+            // the animations cancelled below must not report the end of the interrupted toggle
+            mToggling = true;
+            mToggleFinishPending = true;
+            mMenuButtonHidePending = false;
+
             if (isBackgroundEnabled()) {
-                mShowBackgroundAnimator.start();
+                animateBackgroundDim(true);
             }
 
             if (mIconAnimated) {
@@ -624,81 +911,259 @@ public class FloatingActionMenu extends ViewGroup {
                     mIconToggleSet.start();
                 } else {
                     mCloseAnimatorSet.cancel();
-                    mOpenAnimatorSet.start();
+                    animateIcon(mOpenAnimatorSet, mExpandAnimator, getOpenedRotation());
                 }
             }
 
             mMenuOpened = true;
-            int delay = 0;
-            for (int i = getChildCount() - 1; i >= 0; i--) {
-                View child = getChildAt(i);
-                if (child instanceof FloatingActionButton
-                        && child.getVisibility() != GONE) {
-
-                    final FloatingActionButton fab = (FloatingActionButton) child;
-                    mUiHandler.postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-                            if (fab != mMenuButton) {
-                                fab.show(animate);
-                            }
-                            Label label = (Label) fab.getTag(R.id.fab_label);
-                            if (label != null) {
-                                label.show(animate);
-                            }
-                        }
-                    }, delay);
-                    delay += mAnimationDelayPerItem;
-                }
+            if (itemsCreated && animate && getWidth() > 0) {
+                // the new items need a size to animate, so they start once they have been laid out
+                mStaggerAwaitingLayout = true;
+                requestLayout();
+            } else {
+                startStagger(true, animate);
             }
 
             if (mToggleListener != null) {
                 mToggleListener.onMenuToggle(true);
             }
+
+            mToggling = false;
+            checkToggleFinished();
+        }
+    }
+
+    /**
+     * Creates the labels, and the buttons of the items bound through {@link #setItems(List)},
+     * whose creation was deferred until the menu is first opened by {@code menu_lazyItems}.
+     * Calling it ahead of time, e.g. once the screen has been drawn, takes that work off the
+     * first open.
+     */
+    public void prewarm() {
+        if (mItemsCreated) return;
+
+        mItemsCreated = true;
+        beginMenuUpdate();
+        createLabels();
+        if (mItems != null) {
+            applyItems();
         }
+        endMenuUpdate();
     }
 
-    public void close(final boolean animate) {
+    public boolean isPrewarmed() {
+        return mItemsCreated;
+    }
+
+    public void close(boolean animate) {
         if (isOpened()) {
+            // the animations cancelled below must not report the end of the interrupted toggle
+            mToggling = true;
+            mToggleFinishPending = true;
+
             if (isBackgroundEnabled()) {
-                mHideBackgroundAnimator.start();
+                animateBackgroundDim(false);
             }
 
             if (mIconAnimated) {
                 if (mIconToggleSet != null) {
                     mIconToggleSet.start();
                 } else {
-                    mCloseAnimatorSet.start();
                     mOpenAnimatorSet.cancel();
+                    animateIcon(mCloseAnimatorSet, mCollapseAnimator, CLOSED_PLUS_ROTATION);
                 }
             }
 
             mMenuOpened = false;
-            int delay = 0;
+            startStagger(false, animate);
+
+            if (mToggleListener != null) {
+                mToggleListener.onMenuToggle(false);
+            }
+
+            mToggling = false;
+            checkToggleFinished();
+        }
+    }
+
+    /**
+     * Shows or hides the menu items one after another, the animation delay per item apart,
+     * from a single timeline. Starting a new toggle retargets the items which are still pending,
+     * and a toggle without animation is applied to all the items right away.
+     */
+    private void startStagger(boolean opening, boolean animate) {
+        mStaggerCallback.cancel();
+        mStaggerAwaitingLayout = false;
+        mStaggerOpening = opening;
+        mStaggerAnimate = animate;
+        mStaggerStartTime = SystemClock.uptimeMillis();
+        mStaggerAppliedCount = 0;
+        mStaggerDelay = mAnimationDelayPerItem;
+
+        if (mAnimationTotalDuration > 0) {
+            int itemCount = 0;
             for (int i = 0; i < getChildCount(); i++) {
                 View child = getChildAt(i);
-                if (child instanceof FloatingActionButton
-                        && child.getVisibility() != GONE) {
-
-                    final FloatingActionButton fab = (FloatingActionButton) child;
-                    mUiHandler.postDelayed(new Runnable() {
-                        @Override
-                        public void run() {
-                            if (fab != mMenuButton) {
-                                fab.hide(animate);
-                            }
-                            Label label = (Label) fab.getTag(R.id.fab_label);
-                            if (label != null) {
-                                label.hide(animate);
-                            }
-                        }
-                    }, delay);
-                    delay += animate ? mAnimationDelayPerItem : 0;
+                if (child instanceof FloatingActionButton && child.getVisibility() != GONE) {
+                    itemCount++;
                 }
             }
 
-            if (mToggleListener != null) {
-                mToggleListener.onMenuToggle(false);
+            // the stagger takes at most half of the budget, the item animations get the rest
+            if (itemCount > 1) {
+                mStaggerDelay = Math.min(mStaggerDelay, mAnimationTotalDuration / 2 / (itemCount - 1));
+            }
+            long itemDuration = mAnimationTotalDuration - (long) mStaggerDelay * Math.max(itemCount - 1, 0);
+            setItemsMaxAnimationDuration(itemDuration);
+        }
+
+        if (animate && mUseHardwareLayers) {
+            promoteItemLayers();
+        }
+        onStaggerFrame();
+    }
+
+    /**
+     * Draws the items and their labels into hardware layers for the rest of the toggle, so that
+     * their animations only move the layers around instead of redrawing shadows and text on every
+     * frame. Views which already have a layer of their own are left alone.
+     */
+    private void promoteItemLayers() {
+        if (!isHardwareAccelerated()) return;
+
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (!(child instanceof FloatingActionButton) || child == mMenuButton
+                    || child.getVisibility() == GONE) continue;
+
+            promoteLayer(child);
+            Label label = (Label) child.getTag(R.id.fab_label);
+            if (label != null) {
+                promoteLayer(label);
+            }
+        }
+    }
+
+    private void promoteLayer(View view) {
+        if (view.getLayerType() != LAYER_TYPE_NONE) return;
+
+        view.setLayerType(LAYER_TYPE_HARDWARE, null);
+        mLayerViews.add(view);
+        // rendered now rather than on the first frame of its animation
+        if (getWindowToken() != null && view.getWidth() > 0) {
+            view.buildLayer();
+        }
+    }
+
+    private void releaseItemLayers() {
+        for (int i = 0; i < mLayerViews.size(); i++) {
+            mLayerViews.get(i).setLayerType(LAYER_TYPE_NONE, null);
+        }
+        mLayerViews.clear();
+    }
+
+    private void setItemsMaxAnimationDuration(long maxDuration) {
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (!(child instanceof FloatingActionButton)) continue;
+
+            FloatingActionButton fab = (FloatingActionButton) child;
+            if (fab != mMenuButton) {
+                fab.setMaxAnimationDuration(maxDuration);
+            }
+            Label label = (Label) fab.getTag(R.id.fab_label);
+            if (label != null) {
+                label.setMaxAnimationDuration(maxDuration);
+            }
+        }
+    }
+
+    private long getBudgetedDuration(long duration) {
+        return mAnimationTotalDuration > 0 ? Math.min(duration, mAnimationTotalDuration) : duration;
+    }
+
+    private void onStaggerFrame() {
+        boolean toggling = mToggling;
+        mToggling = true;
+
+        int dueCount = Integer.MAX_VALUE;
+        if (mStaggerAnimate && mStaggerDelay > 0) {
+            long elapsed = SystemClock.uptimeMillis() - mStaggerStartTime;
+            dueCount = (int) Math.min(elapsed / mStaggerDelay + 1, Integer.MAX_VALUE);
+        }
+
+        int childCount = getChildCount();
+        int index = 0;
+        for (int i = 0; i < childCount; i++) {
+            // items appear from the menu button outwards and disappear in the reverse order
+            View child = getChildAt(mStaggerOpening ? childCount - 1 - i : i);
+            if (!(child instanceof FloatingActionButton) || child.getVisibility() == GONE) continue;
+
+            if (index >= mStaggerAppliedCount && index < dueCount) {
+                applyStaggerItem((FloatingActionButton) child);
+            }
+            index++;
+        }
+        mStaggerAppliedCount = Math.min(index, dueCount);
+
+        if (index > dueCount) {
+            mStaggerCallback.postFrame();
+        }
+
+        mToggling = toggling;
+        checkToggleFinished();
+    }
+
+    void onItemShowHideFinished() {
+        checkToggleFinished();
+    }
+
+    /**
+     * Reports the end of the last toggle once nothing it started is animating anymore, and hides
+     * the menu button if that was requested while the menu was open.
+     */
+    private void checkToggleFinished() {
+        if (!mToggleFinishPending || mToggling || mStaggerCallback.isPosted() || mStaggerAwaitingLayout) return;
+        if (mDimAnimating || mOpenAnimatorSet.isStarted() || mCloseAnimatorSet.isStarted()) return;
+
+        for (int i = 0; i < getChildCount(); i++) {
+            View child = getChildAt(i);
+            if (!(child instanceof FloatingActionButton)) continue;
+
+            FloatingActionButton fab = (FloatingActionButton) child;
+            if (fab != mMenuButton && fab.isShowHideAnimating()) return;
+
+            Label label = (Label) fab.getTag(R.id.fab_label);
+            if (label != null && label.isShowHideAnimating()) return;
+        }
+
+        mToggleFinishPending = false;
+        releaseItemLayers();
+        if (mMenuButtonHidePending && !mMenuOpened) {
+            mMenuButtonHidePending = false;
+            hideMenuButtonWithImage(mMenuButtonHideAnimate);
+        }
+
+        if (mToggleFinishedListener != null) {
+            mToggleFinishedListener.onMenuToggleFinished(mMenuOpened);
+        }
+    }
+
+    private void applyStaggerItem(FloatingActionButton fab) {
+        if (fab != mMenuButton) {
+            if (mStaggerOpening) {
+                fab.setHidden(false, mStaggerAnimate);
+            } else {
+                fab.setHidden(true, mStaggerAnimate);
+            }
+        }
+
+        Label label = (Label) fab.getTag(R.id.fab_label);
+        if (label != null) {
+            if (mStaggerOpening) {
+                label.show(mStaggerAnimate);
+            } else {
+                label.hide(mStaggerAnimate);
             }
         }
     }
@@ -728,8 +1193,7 @@ public class FloatingActionMenu extends ViewGroup {
      */
     public void setAnimated(boolean animated) {
         mIsAnimated = animated;
-        mOpenAnimatorSet.setDuration(animated ? ANIMATION_DURATION : 0);
-        mCloseAnimatorSet.setDuration(animated ? ANIMATION_DURATION : 0);
+        mIconAnimationDuration = animated ? ANIMATION_DURATION : 0;
     }
 
     public boolean isAnimated() {
@@ -744,10 +1208,46 @@ public class FloatingActionMenu extends ViewGroup {
         return mAnimationDelayPerItem;
     }
 
+    /**
+     * Sets a time budget for opening and closing the menu. The delay between the items is
+     * shortened and their animations are sped up so that the last item has finished animating
+     * within the budget, whatever the number of items.
+     *
+     * @param totalDuration the budget in milliseconds, or 0 to only use the delay per item
+     */
+    public void setAnimationTotalDuration(int totalDuration) {
+        mAnimationTotalDuration = Math.max(totalDuration, 0);
+        if (mAnimationTotalDuration == 0) {
+            setItemsMaxAnimationDuration(0);
+        }
+    }
+
+    public int getAnimationTotalDuration() {
+        return mAnimationTotalDuration;
+    }
+
+    /**
+     * Sets whether the items and their labels are drawn into hardware layers while the menu is
+     * opened or closed with animation. Each frame of the toggle then only composites the layers,
+     * at the cost of the memory they take until the toggle ends. Only used on hardware
+     * accelerated windows.
+     */
+    public void setUseHardwareLayers(boolean useHardwareLayers) {
+        mUseHardwareLayers = useHardwareLayers;
+    }
+
+    public boolean isUsingHardwareLayers() {
+        return mUseHardwareLayers;
+    }
+
     public void setOnMenuToggleListener(OnMenuToggleListener listener) {
         mToggleListener = listener;
     }
 
+    public void setOnMenuToggleFinishedListener(OnMenuToggleFinishedListener listener) {
+        mToggleFinishedListener = listener;
+    }
+
     public void setIconAnimated(boolean animated) {
         mIconAnimated = animated;
     }
@@ -778,27 +1278,58 @@ public class FloatingActionMenu extends ViewGroup {
         mMenuButton.setHideAnimation(hideAnimation);
     }
 
+    /**
+     * Checks whether the menu button is hidden, or is going to be hidden once the menu has
+     * finished closing.
+     */
     public boolean isMenuButtonHidden() {
-        return mMenuButton.isHidden();
+        if (mMenuButtonCallback.isPosted()) {
+            return mRequestedMenuButtonHidden;
+        }
+        return mMenuButtonHidePending || mMenuButton.isHidden();
     }
 
+    /**
+     * Shows the menu button. Like the animated requests of {@link #hideMenuButton(boolean)}, an
+     * animated request is resolved on the next frame, so flip-flopping requests within a frame
+     * cost nothing.
+     */
     public void showMenuButton(boolean animate) {
-        if (isMenuButtonHidden()) {
-            showMenuButtonWithImage(animate);
+        requestMenuButtonHidden(false, animate);
+    }
+
+    /**
+     * Hides the menu button. If the menu is open, it is closed first and the button is hidden
+     * once the menu has finished closing.
+     */
+    public void hideMenuButton(boolean animate) {
+        requestMenuButtonHidden(true, animate);
+    }
+
+    private void requestMenuButtonHidden(boolean hidden, boolean animate) {
+        if (!animate) {
+            mMenuButtonCallback.cancel();
+            setMenuButtonHidden(hidden, false);
+            return;
+        }
+
+        mRequestedMenuButtonHidden = hidden;
+        if (hidden == (mMenuButtonHidePending || mMenuButton.isHidden())) {
+            mMenuButtonCallback.cancel();
+        } else {
+            mMenuButtonCallback.postFrame();
         }
     }
 
-    public void hideMenuButton(final boolean animate) {
-        if (!isMenuButtonHidden() && !mIsMenuButtonAnimationRunning) {
-            mIsMenuButtonAnimationRunning = true;
+    private void setMenuButtonHidden(boolean hidden, boolean animate) {
+        if (!hidden) {
+            mMenuButtonHidePending = false;
+            showMenuButtonWithImage(animate);
+        } else if (!mMenuButtonHidePending && !mMenuButton.isHidden()) {
             if (isOpened()) {
+                mMenuButtonHidePending = true;
+                mMenuButtonHideAnimate = animate;
                 close(animate);
-                mUiHandler.postDelayed(new Runnable() {
-                    @Override
-                    public void run() {
-                        hideMenuButtonWithImage(animate);
-                    }
-                }, mAnimationDelayPerItem * mButtonsCount);
             } else {
                 hideMenuButtonWithImage(animate);
             }
@@ -859,6 +1390,16 @@ public class FloatingActionMenu extends ViewGroup {
         return mMenuColorRipple;
     }
 
+    /**
+     * Starts a batch of changes to the menu button. The menu button's background is rebuilt
+     * once, when {@link Editor#apply()} is called.
+     *
+     * @return an {@link Editor} collecting the changes
+     */
+    public Editor edit() {
+        return new Editor();
+    }
+
     public void setMenuButtonLabelText(String labelText)
     {
         mMenuButtonLabelText = labelText;
@@ -867,15 +1408,347 @@ public class FloatingActionMenu extends ViewGroup {
     }
 
     public void addMenuButton(FloatingActionButton fab) {
-        addView(fab, mButtonsCount - 1);
-        mButtonsCount++;
-        createLabels();
+        beginMenuUpdate();
+        insertMenuButton(fab, mButtonsCount - 1);
+        endMenuUpdate();
     }
 
     public void removeMenuButton(FloatingActionButton fab) {
-        removeView(fab.getLabelView());
-        removeView(fab);
+        beginMenuUpdate();
+        detachMenuButton(fab);
+        endMenuUpdate();
+    }
+
+    /**
+     * Replaces the menu items with the given buttons, in that order from the farthest to the
+     * closest to the menu button. Buttons which already are items are kept and only moved if
+     * their position changed, the others are added and the remaining items are removed.
+     */
+    public void setMenuButtons(List<FloatingActionButton> fabs) {
+        beginMenuUpdate();
+
+        for (int i = mButtonsCount - 1; i >= 0; i--) {
+            View child = getChildAt(i);
+            if (child instanceof FloatingActionButton && child != mMenuButton && !fabs.contains(child)) {
+                detachMenuButton((FloatingActionButton) child);
+            }
+        }
+
+        // the dim stays drawn behind all the items
+        int previousIndex = mDimView != null ? indexOfChild(mDimView) : -1;
+        for (int i = 0; i < fabs.size(); i++) {
+            FloatingActionButton fab = fabs.get(i);
+            int index = indexOfChild(fab);
+            if (index < 0 || index <= previousIndex) {
+                if (index >= 0) {
+                    // the button was in front of the previous one, which moves down by one
+                    removeViewInLayout(fab);
+                    mButtonsCount--;
+                    previousIndex--;
+                }
+                index = previousIndex + 1;
+                insertMenuButton(fab, index);
+            }
+            previousIndex = index;
+        }
+
+        endMenuUpdate();
+    }
+
+    /**
+     * Binds the menu to the given items, in that order from the farthest to the closest to the
+     * menu button, replacing any other items. The items are matched by id with the ones bound
+     * before: their buttons and labels are reused and only updated where the icon, label, size or
+     * colors changed. New items take over the buttons of the items which are gone, or get new
+     * ones.
+     *
+     * @param items the items, with unique ids
+     * @see #setOnMenuItemClickListener(OnMenuItemClickListener)
+     */
+    public void setItems(List<Item> items) {
+        mItems = new ArrayList<Item>(items);
+        applyItems();
+    }
+
+    /**
+     * Binds the buttons to the items in the visible window. The buttons of items which are still
+     * bound are kept, and the ones of items which are gone are recycled for the new items before
+     * any button is created. Buttons left over are detached and kept for a later window.
+     */
+    private void applyItems() {
+        if (!mItemsCreated) return;
+
+        int start = getFirstVisibleItem();
+        int end = isItemWindowActive() ? start + mMaxVisibleItems : mItems.size();
+
+        // the attached buttons are taken last, so they are recycled before the detached ones
+        for (int i = 0; i < mButtonsCount; i++) {
+            View child = getChildAt(i);
+            if (child.getTag(R.id.fab_item) instanceof Item) {
+                mScrapButtons.add((FloatingActionButton) child);
+            }
+        }
+
+        mItemButtons.clear();
+        for (int i = start; i < end; i++) {
+            mItemButtons.add(takeScrapButton(mItems.get(i).getId()));
+        }
+
+        beginMenuUpdate();
+
+        for (int i = 0; i < mItemButtons.size(); i++) {
+            FloatingActionButton fab = mItemButtons.get(i);
+            if (fab == null) {
+                int scrapCount = mScrapButtons.size();
+                fab = scrapCount > 0 ? mScrapButtons.remove(scrapCount - 1) : createItemButton();
+                mItemButtons.set(i, fab);
+            }
+            bindItem(fab, mItems.get(start + i));
+        }
+        setMenuButtons(mItemButtons);
+
+        endMenuUpdate();
+    }
+
+    /**
+     * Rebinds the buttons of the visible window to the items from the first visible one on,
+     * keeping every view in place.
+     *
+     * @return false if the buttons don't match the window anymore and have to be bound again
+     */
+    private boolean rebindItemWindow() {
+        int count = mItemButtons.size();
+        if (!mItemsCreated || !isItemWindowActive() || count != mMaxVisibleItems) {
+            return false;
+        }
+        for (int i = 0; i < count; i++) {
+            if (mItemButtons.get(i).getParent() != this) return false;
+        }
+
+        int start = getFirstVisibleItem();
+        beginMenuUpdate();
+        for (int i = 0; i < count; i++) {
+            bindItem(mItemButtons.get(i), mItems.get(start + i));
+        }
+        endMenuUpdate();
+        return true;
+    }
+
+    private FloatingActionButton takeScrapButton(int id) {
+        for (int i = 0; i < mScrapButtons.size(); i++) {
+            Item bound = (Item) mScrapButtons.get(i).getTag(R.id.fab_item);
+            if (bound.getId() == id) {
+                return mScrapButtons.remove(i);
+            }
+        }
+        return null;
+    }
+
+    private FloatingActionButton createItemButton() {
+        FloatingActionButton fab = new FloatingActionButton(getContext());
+        fab.setOnClickListener(mItemClickListener);
+        // given back to recycled buttons when they are bound to items without colors
+        mItemColorNormal = fab.getColorNormal();
+        mItemColorPressed = fab.getColorPressed();
+        mItemColorRipple = fab.getColorRipple();
+        return fab;
+    }
+
+    /**
+     * Limits how many of the items bound through {@link #setItems(List)} have a button at once.
+     * The other items are scrolled into view by dragging the open menu, or through
+     * {@link #setFirstVisibleItem(int)}, which rebinds the same buttons to them.
+     *
+     * @param maxVisibleItems the number of items, or 0 to show all of them
+     */
+    public void setMaxVisibleItems(int maxVisibleItems) {
+        mMaxVisibleItems = Math.max(maxVisibleItems, 0);
+        if (mItems != null) {
+            applyItems();
+        }
+    }
+
+    public int getMaxVisibleItems() {
+        return mMaxVisibleItems;
+    }
+
+    /**
+     * Scrolls the window of visible items so that it starts at the given item. By default the
+     * window shows the items closest to the menu button.
+     *
+     * @param position the position of the item in the list passed to {@link #setItems(List)}
+     */
+    public void setFirstVisibleItem(int position) {
+        if (mItems == null) return;
+
+        position = Math.max(0, Math.min(position, mItems.size() - mMaxVisibleItems));
+        if (position != getFirstVisibleItem()) {
+            mFirstVisibleItem = position;
+            if (!rebindItemWindow()) {
+                applyItems();
+            }
+        }
+    }
+
+    /**
+     * Returns the position of the first item with a button. The window stays next to the menu
+     * button as items are added, until it is moved through {@link #setFirstVisibleItem(int)} or
+     * by dragging.
+     */
+    public int getFirstVisibleItem() {
+        if (mItems == null || !isItemWindowActive()) return 0;
+
+        return Math.max(0, Math.min(mFirstVisibleItem, mItems.size() - mMaxVisibleItems));
+    }
+
+    private boolean isItemWindowActive() {
+        return mMaxVisibleItems > 0 && mItems.size() > mMaxVisibleItems;
+    }
+
+    private boolean isItemWindowScrollable() {
+        return mMenuOpened && mItems != null && isItemWindowActive();
+    }
+
+    /**
+     * Moves the window of visible items by one item for each button height dragged, so that the
+     * items follow the finger.
+     */
+    private void dragItemWindow(float dy) {
+        int extent = 0;
+        for (int i = 0; i < mButtonsCount; i++) {
+            View child = getChildAt(i);
+            if (child instanceof FloatingActionButton && child != mMenuButton && child.getVisibility() != GONE) {
+                extent = child.getHeight() + mButtonSpacing;
+                break;
+            }
+        }
+        if (extent <= 0) return;
+
+        mItemsDragOffset += dy;
+        int steps = (int) (mItemsDragOffset / extent);
+        if (steps != 0) {
+            mItemsDragOffset -= steps * extent;
+            setFirstVisibleItem(getFirstVisibleItem() + (mOpenDirection == OPEN_UP ? -steps : steps));
+        }
+    }
+
+    public void setOnMenuItemClickListener(OnMenuItemClickListener listener) {
+        mMenuItemClickListener = listener;
+    }
+
+    private void bindItem(FloatingActionButton fab, Item item) {
+        Item bound = (Item) fab.getTag(R.id.fab_item);
+
+        if (bound == null || bound.mIcon != item.mIcon || bound.mIconResId != item.mIconResId) {
+            if (item.mIcon != null) {
+                fab.setImageDrawable(item.mIcon);
+            } else if (item.mIconResId != 0) {
+                fab.setImageResource(item.mIconResId);
+            } else {
+                fab.setImageDrawable(null);
+            }
+        }
+
+        boolean sizeChanged = bound == null || bound.mButtonSize != item.mButtonSize;
+        boolean colorsChanged = item.mHasColors ? bound == null || !bound.mHasColors
+                || bound.mColorNormal != item.mColorNormal || bound.mColorPressed != item.mColorPressed
+                || bound.mColorRipple != item.mColorRipple
+                : bound != null && bound.mHasColors;
+        if (sizeChanged || colorsChanged) {
+            FloatingActionButton.Editor editor = fab.edit();
+            if (sizeChanged) {
+                editor.setButtonSize(item.mButtonSize);
+            }
+            if (colorsChanged && item.mHasColors) {
+                editor.setColorNormal(item.mColorNormal)
+                        .setColorPressed(item.mColorPressed)
+                        .setColorRipple(item.mColorRipple);
+            } else if (colorsChanged) {
+                editor.setColorNormal(mItemColorNormal)
+                        .setColorPressed(mItemColorPressed)
+                        .setColorRipple(mItemColorRipple);
+            }
+            editor.apply();
+        }
+
+        if (bound == null || !TextUtils.equals(bound.mLabel, item.mLabel)) {
+            fab.setLabelText(item.mLabel);
+            View label = fab.getLabelView();
+            if (TextUtils.isEmpty(item.mLabel) && label != null) {
+                removeViewInLayout(label);
+                fab.setTag(R.id.fab_label, null);
+                mItemsChanged = true;
+            } else if (label == null && fab.getParent() == this) {
+                // created along with the labels of the new items
+                mAddedItems.add(fab);
+            }
+        }
+
+        // a copy, so that changes to the item are only seen when it is bound again
+        if (bound != null) {
+            bound.set(item);
+        } else {
+            fab.setTag(R.id.fab_item, new Item(item));
+        }
+    }
+
+    /**
+     * Starts collecting changes to the menu items, which are applied with a single label pass and
+     * layout by the matching {@link #endMenuUpdate()}. Calls may be nested.
+     */
+    public void beginMenuUpdate() {
+        mUpdateDepth++;
+    }
+
+    public void endMenuUpdate() {
+        if (mUpdateDepth == 0) return;
+        if (mUpdateDepth > 1) {
+            mUpdateDepth--;
+            return;
+        }
+
+        // the labels are still added without a layout request of their own
+        if (!mAddedItems.isEmpty()) {
+            Context context = new ContextThemeWrapper(getContext(), mLabelsStyle);
+            for (int i = 0; i < mAddedItems.size(); i++) {
+                FloatingActionButton fab = mAddedItems.get(i);
+                if (fab.getParent() == this) {
+                    createLabel(context, fab);
+                    applyClosedState(fab);
+                }
+            }
+            mAddedItems.clear();
+        }
+        mUpdateDepth = 0;
+
+        if (mItemsChanged) {
+            mItemsChanged = false;
+            requestLayout();
+            invalidate();
+        }
+    }
+
+    private void insertMenuButton(FloatingActionButton fab, int index) {
+        LayoutParams params = fab.getLayoutParams();
+        addViewInLayout(fab, index, params != null ? params : generateDefaultLayoutParams());
+        mButtonsCount++;
+        mItemsChanged = true;
+        if (fab.getTag(R.id.fab_label) == null) {
+            mAddedItems.add(fab);
+        }
+    }
+
+    private void detachMenuButton(FloatingActionButton fab) {
+        if (fab.getParent() != this) return;
+
+        View label = fab.getLabelView();
+        if (label != null) {
+            removeViewInLayout(label);
+            fab.setTag(R.id.fab_label, null);
+        }
+        removeViewInLayout(fab);
         mButtonsCount--;
+        mItemsChanged = true;
     }
 
     public void setOnOpenMenuButtonClickListener(OnClickListener listener, boolean animateOnClose) {
@@ -885,4 +1758,152 @@ public class FloatingActionMenu extends ViewGroup {
             mAnimateOnCloseIfActiveMenuButtonClickListener = true;
         }
     }
+
+    /**
+     * Collects changes to the menu button's colors and applies them at once.
+     *
+     * @see #edit()
+     */
+    public final class Editor {
+
+        private final FloatingActionButton.Editor mButtonEditor = mMenuButton.edit();
+
+        private Editor() {
+        }
+
+        public Editor setMenuButtonColorNormal(int color) {
+            mButtonEditor.setColorNormal(color);
+            return this;
+        }
+
+        public Editor setMenuButtonColorNormalResId(int colorResId) {
+            mButtonEditor.setColorNormalResId(colorResId);
+            return this;
+        }
+
+        public Editor setMenuButtonColorPressed(int color) {
+            mButtonEditor.setColorPressed(color);
+            return this;
+        }
+
+        public Editor setMenuButtonColorPressedResId(int colorResId) {
+            mButtonEditor.setColorPressedResId(colorResId);
+            return this;
+        }
+
+        public Editor setMenuButtonColorRipple(int color) {
+            mButtonEditor.setColorRipple(color);
+            return this;
+        }
+
+        public Editor setMenuButtonColorRippleResId(int colorResId) {
+            mButtonEditor.setColorRippleResId(colorResId);
+            return this;
+        }
+
+        public void apply() {
+            mButtonEditor.apply();
+            mMenuColorNormal = mMenuButton.getColorNormal();
+            mMenuColorPressed = mMenuButton.getColorPressed();
+            mMenuColorRipple = mMenuButton.getColorRipple();
+        }
+    }
+
+    /**
+     * Describes an item of a menu bound through {@link #setItems(List)}: its id, icon, label,
+     * button size and colors. Items without colors of their own get the colors of a new button.
+     */
+    public static class Item {
+
+        private int mId;
+        private int mIconResId;
+        private Drawable mIcon;
+        private String mLabel;
+        private int mButtonSize = FloatingActionButton.SIZE_NORMAL;
+        private boolean mHasColors;
+        private int mColorNormal;
+        private int mColorPressed;
+        private int mColorRipple;
+
+        public Item(int id, int iconResId, String label) {
+            mId = id;
+            mIconResId = iconResId;
+            mLabel = label;
+        }
+
+        public Item(int id, Drawable icon, String label) {
+            mId = id;
+            mIcon = icon;
+            mLabel = label;
+        }
+
+        private Item(Item item) {
+            set(item);
+        }
+
+        private void set(Item item) {
+            mId = item.mId;
+            mIconResId = item.mIconResId;
+            mIcon = item.mIcon;
+            mLabel = item.mLabel;
+            mButtonSize = item.mButtonSize;
+            mHasColors = item.mHasColors;
+            mColorNormal = item.mColorNormal;
+            mColorPressed = item.mColorPressed;
+            mColorRipple = item.mColorRipple;
+        }
+
+        public int getId() {
+            return mId;
+        }
+
+        public void setIcon(int iconResId) {
+            mIconResId = iconResId;
+            mIcon = null;
+        }
+
+        public void setIcon(Drawable icon) {
+            mIcon = icon;
+            mIconResId = 0;
+        }
+
+        public void setLabel(String label) {
+            mLabel = label;
+        }
+
+        public String getLabel() {
+            return mLabel;
+        }
+
+        /**
+         * @param size size of the item's button. Accepted values: SIZE_NORMAL, SIZE_MINI.
+         */
+        public void setButtonSize(int size) {
+            mButtonSize = size;
+        }
+
+        public int getButtonSize() {
+            return mButtonSize;
+        }
+
+        public void setColors(int colorNormal, int colorPressed, int colorRipple) {
+            mColorNormal = colorNormal;
+            mColorPressed = colorPressed;
+            mColorRipple = colorRipple;
+            mHasColors = true;
+        }
+    }
+
+    private static class DimView extends View {
+
+        DimView(Context context) {
+            super(context);
+        }
+
+        @Override
+        public boolean hasOverlappingRendering() {
+            // a single color, so the alpha can be applied while drawing instead of to a layer
+            return false;
+        }
+    }
 }
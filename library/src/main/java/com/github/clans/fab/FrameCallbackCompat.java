@@ -0,0 +1,106 @@
+package com.github.clans.fab;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * Runs {@link #doFrame(long)} once on the next display frame after being posted. Uses the
+ * {@link Choreographer} on API 16+ and a {@link Handler} ticking at the display refresh interval
+ * on older devices. Must only be used from the UI thread.
+ */
+abstract class FrameCallbackCompat {
+
+    static final long FRAME_INTERVAL = 16;
+
+    private Object mFrameCallback;
+    private Handler mHandler;
+    private Runnable mRunnable;
+    private boolean mPosted;
+
+    abstract void doFrame(long frameTimeNanos);
+
+    final void postFrame() {
+        postFrameDelayed(0);
+    }
+
+    final void postFrameDelayed(long delayMillis) {
+        if (mPosted) return;
+
+        mPosted = true;
+        if (Util.hasJellyBean()) {
+            getChoreographer().postFrameCallbackDelayed(getFrameCallback(), delayMillis);
+        } else {
+            getHandler().postDelayed(getRunnable(), Math.max(delayMillis, FRAME_INTERVAL));
+        }
+    }
+
+    final void cancel() {
+        if (!mPosted) return;
+
+        mPosted = false;
+        if (Util.hasJellyBean()) {
+            getChoreographer().removeFrameCallback(getFrameCallback());
+        } else {
+            getHandler().removeCallbacks(getRunnable());
+        }
+    }
+
+    final boolean isPosted() {
+        return mPosted;
+    }
+
+    private void dispatchFrame(long frameTimeNanos) {
+        mPosted = false;
+        doFrame(frameTimeNanos);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static Choreographer getChoreographer() {
+        return Choreographer.getInstance();
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private Choreographer.FrameCallback getFrameCallback() {
+        if (mFrameCallback == null) {
+            mFrameCallback = new FrameCallback(this);
+        }
+        return (Choreographer.FrameCallback) mFrameCallback;
+    }
+
+    private Handler getHandler() {
+        if (mHandler == null) {
+            mHandler = new Handler(Looper.getMainLooper());
+        }
+        return mHandler;
+    }
+
+    private Runnable getRunnable() {
+        if (mRunnable == null) {
+            mRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    dispatchFrame(System.nanoTime());
+                }
+            };
+        }
+        return mRunnable;
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class FrameCallback implements Choreographer.FrameCallback {
+
+        private final FrameCallbackCompat mOwner;
+
+        private FrameCallback(FrameCallbackCompat owner) {
+            mOwner = owner;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            mOwner.dispatchFrame(frameTimeNanos);
+        }
+    }
+}
@@ -3,14 +3,14 @@ package com.github.clans.fab;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.ColorStateList;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Color;
 import android.graphics.ColorFilter;
 import android.graphics.Outline;
 import android.graphics.Paint;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
-import android.graphics.RectF;
-import android.graphics.Xfermode;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.LayerDrawable;
 import android.graphics.drawable.RippleDrawable;
@@ -28,8 +28,6 @@ import android.widget.TextView;
 
 public class Label extends TextView {
 
-    private static final Xfermode PORTER_DUFF_CLEAR = new PorterDuffXfermode(PorterDuff.Mode.CLEAR);
-
     private int mShadowRadius;
     private int mShadowXOffset;
     private int mShadowYOffset;
@@ -46,6 +44,22 @@ public class Label extends TextView {
     private Animation mShowAnimation;
     private Animation mHideAnimation;
     private boolean mUsingStyle;
+    private final ShowHideAnimator mShowHideAnimator = new ShowHideAnimator(this, new ShowHideAnimator.Listener() {
+        @Override
+        public void onShowHideFinished(boolean hidden) {
+            if (mShowHideFinishedListener != null) {
+                mShowHideFinishedListener.onShowHideFinished(Label.this, hidden);
+            }
+            if (getParent() instanceof FloatingActionMenu) {
+                ((FloatingActionMenu) getParent()).onItemShowHideFinished();
+            }
+        }
+    });
+    private OnShowHideFinishedListener mShowHideFinishedListener;
+
+    public interface OnShowHideFinishedListener {
+        void onShowHideFinished(Label label, boolean hidden);
+    }
 
     public Label(Context context) {
         super(context);
@@ -177,18 +191,6 @@ public class Label extends TextView {
         }
     }
 
-    private void playShowAnimation() {
-        if (mShowAnimation != null) {
-            startAnimation(mShowAnimation);
-        }
-    }
-
-    private void playHideAnimation() {
-        if (mHideAnimation != null) {
-            startAnimation(mHideAnimation);
-        }
-    }
-
     @TargetApi(Build.VERSION_CODES.LOLLIPOP)
     void onActionDown() {
         if (mUsingStyle) {
@@ -243,17 +245,20 @@ public class Label extends TextView {
     }
 
     void show(boolean animate) {
-        if (animate) {
-            playShowAnimation();
+        if (!animate) {
+            mShowHideAnimator.cancel();
         }
-        setVisibility(VISIBLE);
+        // the shadow makes the label expensive to redraw on every frame
+        mShowHideAnimator.setUseHardwareLayer(mShowShadow);
+        mShowHideAnimator.show(animate ? mShowAnimation : null);
     }
 
     void hide(boolean animate) {
-        if (animate) {
-            playHideAnimation();
+        if (!animate) {
+            mShowHideAnimator.cancel();
         }
-        setVisibility(INVISIBLE);
+        mShowHideAnimator.setUseHardwareLayer(mShowShadow);
+        mShowHideAnimator.hide(animate ? mHideAnimation : null);
     }
 
     void setShowAnimation(Animation showAnimation) {
@@ -264,10 +269,28 @@ public class Label extends TextView {
         mHideAnimation = hideAnimation;
     }
 
+    public void setOnShowHideFinishedListener(OnShowHideFinishedListener listener) {
+        mShowHideFinishedListener = listener;
+    }
+
+    boolean isShowHideAnimating() {
+        return mShowHideAnimator.isRunning();
+    }
+
+    void setMaxAnimationDuration(long maxDuration) {
+        mShowHideAnimator.setMaxDuration(maxDuration);
+    }
+
     void setUsingStyle(boolean usingStyle) {
         mUsingStyle = usingStyle;
     }
 
+    @Override
+    protected void onDetachedFromWindow() {
+        mShowHideAnimator.cancel();
+        super.onDetachedFromWindow();
+    }
+
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         if (mFab == null || mFab.getOnClickListener() == null) return false;
@@ -305,53 +328,55 @@ public class Label extends TextView {
         }
     });
 
+    /**
+     * Draws the shadow from a mask shared through {@link ShadowCache}, so the label doesn't need
+     * a software layer and can be drawn into a hardware layer while it animates.
+     */
     private class Shadow extends Drawable {
 
-        private Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        private Paint mErase = new Paint(Paint.ANTI_ALIAS_FLAG);
+        private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        private Bitmap mMask;
+        private int mMaskWidth;
+        private int mMaskHeight;
 
         private Shadow() {
-            this.init();
+            mPaint.setColor(mShadowColor);
         }
 
-        private void init() {
-            setLayerType(LAYER_TYPE_SOFTWARE, null);
-            mPaint.setStyle(Paint.Style.FILL);
-            mPaint.setColor(mColorNormal);
+        @Override
+        public void draw(Canvas canvas) {
+            if (isInEditMode()) return;
 
-            mErase.setXfermode(PORTER_DUFF_CLEAR);
+            int width = mRawWidth - calculateShadowWidth();
+            int height = mRawHeight - calculateShadowHeight();
+            if (width <= 0 || height <= 0) return;
 
-            if (!isInEditMode()) {
-                mPaint.setShadowLayer(mShadowRadius, mShadowXOffset, mShadowYOffset, mShadowColor);
+            if (mMask == null || mMaskWidth != width || mMaskHeight != height) {
+                mMask = ShadowCache.getRoundRectShadow(FabMetrics.get(getContext()).density, width, height,
+                        mCornerRadius, mShadowRadius, mShadowXOffset, mShadowYOffset);
+                mMaskWidth = width;
+                mMaskHeight = height;
             }
-        }
-
-        @Override
-        public void draw(Canvas canvas) {
-            RectF shadowRect = new RectF(
-                    mShadowRadius + Math.abs(mShadowXOffset),
-                    mShadowRadius + Math.abs(mShadowYOffset),
-                    mRawWidth,
-                    mRawHeight
-            );
 
-            canvas.drawRoundRect(shadowRect, mCornerRadius, mCornerRadius, mPaint);
-            canvas.drawRoundRect(shadowRect, mCornerRadius, mCornerRadius, mErase);
+            Rect bounds = getBounds();
+            canvas.drawBitmap(mMask, bounds.left, bounds.top, mPaint);
         }
 
         @Override
         public void setAlpha(int alpha) {
-
+            mPaint.setAlpha(Color.alpha(mShadowColor) * alpha / 255);
+            invalidateSelf();
         }
 
         @Override
         public void setColorFilter(ColorFilter cf) {
-
+            mPaint.setColorFilter(cf);
+            invalidateSelf();
         }
 
         @Override
         public int getOpacity() {
-            return 0;
+            return PixelFormat.TRANSLUCENT;
         }
     }
 }
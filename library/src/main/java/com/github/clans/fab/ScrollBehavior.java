@@ -0,0 +1,333 @@
+package com.github.clans.fab;
+
+import android.animation.ValueAnimator;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.ViewConfiguration;
+import android.view.ViewTreeObserver;
+import android.widget.AbsListView;
+import android.widget.ScrollView;
+
+/**
+ * Hides a {@link FloatingActionButton} or the button of a {@link FloatingActionMenu} while the
+ * content is scrolled down and shows it again when it is scrolled up.
+ * <p>
+ * The scroll events can come from a {@link AbsListView} or a {@link ScrollView} the behavior is
+ * attached to, or from any other scrolling view through {@link #onScrolled(int)}, e.g. from a
+ * {@code RecyclerView.OnScrollListener}. The direction has to be kept for the scroll threshold
+ * or be flung faster than the velocity threshold before the button is toggled, so that small
+ * jitters in the scroll don't make it flicker. No objects are allocated per scroll event.
+ * <p>
+ * In quick return mode the button follows the scroll offset through its translation instead of
+ * being animated, and settles shown or hidden once the scroll stops. A {@link ScrollView} doesn't
+ * report when it stops, so it is taken as stopped once it hasn't scrolled for a short while. The
+ * translation is left alone while the button plays a show or hide animation, which restores the
+ * translation it started from when it ends, and settling stops as soon as such an animation starts.
+ */
+public class ScrollBehavior {
+
+    private static final float DEFAULT_VELOCITY_THRESHOLD_DP = 1000f;
+    private static final int SETTLE_DURATION = 200;
+    private static final int SCROLL_IDLE_DELAY = 100;
+    private static final int MIN_VELOCITY_WINDOW = 16;
+
+    private final View mView;
+    private final FloatingActionButton mFab;
+    private final FloatingActionMenu mMenu;
+
+    private int mScrollThreshold;
+    private float mVelocityThreshold;
+    private boolean mQuickReturn;
+    private boolean mCloseMenuOnScroll = true;
+
+    private int mAccumulatedScroll;
+    private long mAccumulatedStartTime;
+    private long mLastScrollTime;
+
+    private AbsListView mListView;
+    private AbsListView.OnScrollListener mListScrollListener;
+    private int mFirstVisiblePosition;
+    private int mFirstVisibleTop;
+    private int mFirstVisibleHeight;
+
+    private ScrollView mScrollView;
+    private int mLastScrollY;
+
+    private final ValueAnimator mSettleAnimator = ValueAnimator.ofFloat(0f, 1f);
+    private float mSettleFrom;
+    private float mSettleTo;
+
+    private final AbsListView.OnScrollListener mListListener = new AbsListView.OnScrollListener() {
+        @Override
+        public void onScrollStateChanged(AbsListView view, int scrollState) {
+            if (scrollState == SCROLL_STATE_IDLE) {
+                onScrollStopped();
+            }
+            if (mListScrollListener != null) {
+                mListScrollListener.onScrollStateChanged(view, scrollState);
+            }
+        }
+
+        @Override
+        public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+            onListScrolled(view, firstVisibleItem);
+            if (mListScrollListener != null) {
+                mListScrollListener.onScroll(view, firstVisibleItem, visibleItemCount, totalItemCount);
+            }
+        }
+    };
+
+    private final ViewTreeObserver.OnScrollChangedListener mScrollChangedListener =
+            new ViewTreeObserver.OnScrollChangedListener() {
+        @Override
+        public void onScrollChanged() {
+            int scrollY = mScrollView.getScrollY();
+            if (scrollY != mLastScrollY) {
+                onScrolled(scrollY - mLastScrollY);
+                mLastScrollY = scrollY;
+                mScrollView.removeCallbacks(mScrollIdleCheck);
+                mScrollView.postDelayed(mScrollIdleCheck, SCROLL_IDLE_DELAY);
+            }
+        }
+    };
+
+    private final Runnable mScrollIdleCheck = new Runnable() {
+        @Override
+        public void run() {
+            onScrollStopped();
+        }
+    };
+
+    public ScrollBehavior(FloatingActionButton fab) {
+        this(fab, fab, null);
+    }
+
+    public ScrollBehavior(FloatingActionMenu menu) {
+        this(menu, null, menu);
+    }
+
+    private ScrollBehavior(View view, FloatingActionButton fab, FloatingActionMenu menu) {
+        mView = view;
+        mFab = fab;
+        mMenu = menu;
+        mScrollThreshold = ViewConfiguration.get(view.getContext()).getScaledTouchSlop();
+        mVelocityThreshold = FabMetrics.get(view.getContext()).dpToPx(DEFAULT_VELOCITY_THRESHOLD_DP);
+
+        mSettleAnimator.setDuration(SETTLE_DURATION);
+        mSettleAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                // the translation belongs to the show or hide animation until it ends
+                if (isShowHideAnimating()) {
+                    animation.cancel();
+                    return;
+                }
+                mView.setTranslationY(mSettleFrom + (mSettleTo - mSettleFrom) * animation.getAnimatedFraction());
+            }
+        });
+    }
+
+    /**
+     * Sets the distance the content has to be scrolled in one direction before the button is
+     * shown or hidden. Defaults to the touch slop.
+     *
+     * @param distance the distance in pixels
+     */
+    public void setScrollThreshold(int distance) {
+        mScrollThreshold = Math.max(distance, 0);
+    }
+
+    public int getScrollThreshold() {
+        return mScrollThreshold;
+    }
+
+    /**
+     * Sets the scroll velocity above which the button is toggled right away, before the scroll
+     * threshold is reached.
+     *
+     * @param velocity the velocity in pixels per second, or 0 to only use the scroll threshold
+     */
+    public void setVelocityThreshold(float velocity) {
+        mVelocityThreshold = Math.max(velocity, 0f);
+    }
+
+    public float getVelocityThreshold() {
+        return mVelocityThreshold;
+    }
+
+    /**
+     * Sets whether the button follows the scroll offset instead of playing its show and hide
+     * animations.
+     */
+    public void setQuickReturn(boolean quickReturn) {
+        mQuickReturn = quickReturn;
+        if (!quickReturn) {
+            mSettleAnimator.cancel();
+            mView.setTranslationY(0f);
+        }
+    }
+
+    public boolean isQuickReturn() {
+        return mQuickReturn;
+    }
+
+    /**
+     * Sets whether an open menu is closed as soon as the content is scrolled. Only used with a
+     * {@link FloatingActionMenu}.
+     */
+    public void setCloseMenuOnScroll(boolean close) {
+        mCloseMenuOnScroll = close;
+    }
+
+    public boolean isCloseMenuOnScroll() {
+        return mCloseMenuOnScroll;
+    }
+
+    /**
+     * Attaches the behavior to a list. A list only takes a single scroll listener, so the one the
+     * app needs has to be passed here instead of being set on the list.
+     *
+     * @param listView the list to follow
+     * @param listener the app's scroll listener, or null
+     */
+    public void attachTo(AbsListView listView, AbsListView.OnScrollListener listener) {
+        detach();
+        mListView = listView;
+        mListScrollListener = listener;
+        mFirstVisiblePosition = AbsListView.INVALID_POSITION;
+        listView.setOnScrollListener(mListListener);
+    }
+
+    public void attachTo(ScrollView scrollView) {
+        detach();
+        mScrollView = scrollView;
+        mLastScrollY = scrollView.getScrollY();
+        scrollView.getViewTreeObserver().addOnScrollChangedListener(mScrollChangedListener);
+    }
+
+    /**
+     * Stops following the list or scroll view the behavior was attached to.
+     */
+    public void detach() {
+        if (mListView != null) {
+            mListView.setOnScrollListener(mListScrollListener);
+            mListView = null;
+            mListScrollListener = null;
+        }
+
+        if (mScrollView != null) {
+            mScrollView.removeCallbacks(mScrollIdleCheck);
+            ViewTreeObserver observer = mScrollView.getViewTreeObserver();
+            if (observer.isAlive()) {
+                observer.removeOnScrollChangedListener(mScrollChangedListener);
+            }
+            mScrollView = null;
+        }
+    }
+
+    /**
+     * Reports that the content was scrolled.
+     *
+     * @param dy the scrolled distance, positive when scrolling down towards the end of the content
+     */
+    public void onScrolled(int dy) {
+        if (dy == 0) return;
+
+        if (mMenu != null && mCloseMenuOnScroll && mMenu.isOpened()) {
+            mMenu.close(mMenu.isAnimated());
+        }
+
+        long now = SystemClock.uptimeMillis();
+        long lastScrollTime = mLastScrollTime;
+        mLastScrollTime = now;
+
+        if (mQuickReturn) {
+            if (isShowHideAnimating()) return;
+
+            float translation = mView.getTranslationY() + dy;
+            mSettleAnimator.cancel();
+            mView.setTranslationY(Math.max(0f, Math.min(translation, getHideDistance())));
+            return;
+        }
+
+        // only the distance scrolled in the current direction counts
+        if ((dy > 0) != (mAccumulatedScroll > 0)) {
+            mAccumulatedScroll = 0;
+            mAccumulatedStartTime = lastScrollTime;
+        }
+        mAccumulatedScroll += dy;
+
+        // measured over the whole distance in this direction, since scroll events can come a
+        // millisecond apart and make any small jitter look like a fling
+        long elapsed = now - mAccumulatedStartTime;
+        boolean fast = mVelocityThreshold > 0 && elapsed >= MIN_VELOCITY_WINDOW
+                && Math.abs(mAccumulatedScroll) * 1000f / elapsed > mVelocityThreshold;
+        if (fast || Math.abs(mAccumulatedScroll) > mScrollThreshold) {
+            setHidden(mAccumulatedScroll > 0);
+        }
+    }
+
+    /**
+     * Reports that the content has stopped scrolling, which settles the button when it follows
+     * the scroll offset.
+     */
+    public void onScrollStopped() {
+        if (!mQuickReturn || isShowHideAnimating()) return;
+
+        float hideDistance = getHideDistance();
+        mSettleFrom = mView.getTranslationY();
+        mSettleTo = mSettleFrom > hideDistance / 2 ? hideDistance : 0f;
+        mSettleAnimator.cancel();
+        mSettleAnimator.start();
+    }
+
+    private void setHidden(boolean hidden) {
+        if (mFab != null) {
+            if (hidden) {
+                mFab.hide(true);
+            } else {
+                mFab.show(true);
+            }
+        } else if (hidden) {
+            mMenu.hideMenuButton(true);
+        } else {
+            mMenu.showMenuButton(true);
+        }
+    }
+
+    /**
+     * Returns whether the translation of the button is owned by its show or hide animation.
+     */
+    private boolean isShowHideAnimating() {
+        return mFab != null && mFab.isShowHideAnimating();
+    }
+
+    private float getHideDistance() {
+        View parent = (View) mView.getParent();
+        int parentHeight = parent != null ? parent.getHeight() : mView.getBottom();
+        return Math.max(parentHeight - mView.getTop(), 0);
+    }
+
+    private void onListScrolled(AbsListView listView, int firstVisibleItem) {
+        View firstChild = listView.getChildAt(0);
+        if (firstChild == null) return;
+
+        int top = firstChild.getTop();
+        int height = firstChild.getHeight();
+        if (mFirstVisiblePosition != AbsListView.INVALID_POSITION) {
+            // the rows scrolled past are assumed to be as high as the first one on each side
+            int rows = firstVisibleItem - mFirstVisiblePosition;
+            int dy;
+            if (rows >= 0) {
+                dy = mFirstVisibleTop + rows * mFirstVisibleHeight - top;
+            } else {
+                dy = mFirstVisibleTop + rows * height - top;
+            }
+            onScrolled(dy);
+        }
+
+        mFirstVisiblePosition = firstVisibleItem;
+        mFirstVisibleTop = top;
+        mFirstVisibleHeight = height;
+    }
+}
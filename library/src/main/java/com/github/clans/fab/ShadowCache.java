@@ -0,0 +1,81 @@
+package com.github.clans.fab;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.PorterDuff;
+import android.graphics.PorterDuffXfermode;
+import android.graphics.RectF;
+import android.util.LruCache;
+
+/**
+ * Process-wide cache of pre-rendered shadow masks.
+ * <p>
+ * Every distinct shadow is blurred once in software into an {@link Bitmap.Config#ALPHA_8} bitmap
+ * and shared by all the views using it. The mask is tinted with the shadow color at draw time,
+ * so the views drawing it can stay hardware accelerated.
+ */
+final class ShadowCache {
+
+    private static final int MAX_CACHE_SIZE = 2 * 1024 * 1024;
+
+    private static final LruCache<String, Bitmap> sMasks = new LruCache<String, Bitmap>(MAX_CACHE_SIZE) {
+        @Override
+        protected int sizeOf(String key, Bitmap value) {
+            return value.getRowBytes() * value.getHeight();
+        }
+    };
+
+    private ShadowCache() {
+    }
+
+    /**
+     * Returns an alpha-only mask of the shadow cast by a circle of the given diameter. The circle
+     * is centered in the mask and its own area is left transparent.
+     */
+    static Bitmap getCircleShadow(float density, int diameter, int radius, int xOffset, int yOffset) {
+        return getRoundRectShadow(density, diameter, diameter, diameter / 2f, radius, xOffset, yOffset);
+    }
+
+    /**
+     * Returns an alpha-only mask of the shadow cast by a rounded rectangle of the given size. The
+     * rectangle is centered in the mask, {@code radius + |offset|} away from its edges, and its
+     * own area is left transparent.
+     */
+    static Bitmap getRoundRectShadow(float density, int width, int height, float cornerRadius,
+                                     int radius, int xOffset, int yOffset) {
+        String key = width + "x" + height + ":" + cornerRadius + ":" + radius + ":" + xOffset + ":"
+                + yOffset + ":" + density;
+
+        Bitmap mask = sMasks.get(key);
+        if (mask == null) {
+            mask = createRoundRectShadow(width, height, cornerRadius, radius, xOffset, yOffset);
+            sMasks.put(key, mask);
+        }
+        return mask;
+    }
+
+    private static Bitmap createRoundRectShadow(int rectWidth, int rectHeight, float cornerRadius,
+                                                int radius, int xOffset, int yOffset) {
+        int insetX = radius + Math.abs(xOffset);
+        int insetY = radius + Math.abs(yOffset);
+        int width = rectWidth + insetX * 2;
+        int height = rectHeight + insetY * 2;
+        Bitmap mask = Bitmap.createBitmap(Math.max(width, 1), Math.max(height, 1), Bitmap.Config.ALPHA_8);
+        Canvas canvas = new Canvas(mask);
+
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(Paint.Style.FILL);
+        paint.setColor(Color.BLACK);
+        paint.setShadowLayer(radius, xOffset, yOffset, Color.BLACK);
+
+        Paint erase = new Paint(Paint.ANTI_ALIAS_FLAG);
+        erase.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.CLEAR));
+
+        RectF rect = new RectF(insetX, insetY, insetX + rectWidth, insetY + rectHeight);
+        canvas.drawRoundRect(rect, cornerRadius, cornerRadius, paint);
+        canvas.drawRoundRect(rect, cornerRadius, cornerRadius, erase);
+        return mask;
+    }
+}
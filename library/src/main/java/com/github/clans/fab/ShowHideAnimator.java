@@ -0,0 +1,283 @@
+package com.github.clans.fab;
+
+import android.animation.Animator;
+import android.animation.AnimatorListenerAdapter;
+import android.animation.ValueAnimator;
+import android.graphics.Matrix;
+import android.view.View;
+import android.view.animation.Animation;
+import android.view.animation.LinearInterpolator;
+import android.view.animation.Transformation;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Plays the show and hide {@link Animation}s of a view through its properties instead of
+ * {@link View#startAnimation(Animation)}, so that toggling the view while it is animating reverses
+ * the running animation from where it is rather than restarting the other one from scratch.
+ * <p>
+ * The animations are sampled on every frame and their transformation is applied on top of the
+ * translation, scale, rotation and alpha the view had when it started, which are restored when it
+ * ends. They are drawn by the render thread and don't invalidate the parent. Views that are expensive to redraw can be promoted to a hardware
+ * layer while they animate. An animation is initialized when it starts, and again only if the size
+ * of the view changes or another view has sampled it in between, so it may be shared between
+ * several views. The view stays visible until a hide animation ends. Must only be used from the UI
+ * thread.
+ */
+final class ShowHideAnimator {
+
+    /**
+     * The id of the animator each animation was last initialized by. The animators aren't kept
+     * themselves, since they hold on to their view, which holds on to its animations.
+     */
+    private static final Map<Animation, Integer> sInitializedBy = new WeakHashMap<Animation, Integer>();
+    private static int sNextId;
+
+    interface Listener {
+        /**
+         * Called once the view is fully shown or hidden, right away if it wasn't animated.
+         */
+        void onShowHideFinished(boolean hidden);
+    }
+
+    private final View mView;
+    private final Listener mListener;
+    private final ValueAnimator mAnimator = ValueAnimator.ofFloat(0f, 1f);
+    private final Transformation mTransformation = new Transformation();
+    private final float[] mValues = new float[9];
+    private final int mId = sNextId++;
+
+    private Animation mAnimation;
+    private long mDuration;
+    private long mMaxDuration;
+    private boolean mHidden;
+    private boolean mUseHardwareLayer;
+    private boolean mLayerPromoted;
+    private boolean mRotated;
+    private float mBaseTranslationX;
+    private float mBaseTranslationY;
+    private float mBaseRotation;
+    private float mBaseScaleX;
+    private float mBaseScaleY;
+    private float mBaseAlpha;
+    private boolean mRetargeting;
+    private int mInitializedWidth;
+    private int mInitializedHeight;
+    private int mInitializedParentWidth;
+    private int mInitializedParentHeight;
+
+    ShowHideAnimator(View view, Listener listener) {
+        mView = view;
+        mListener = listener;
+        mAnimator.setInterpolator(new LinearInterpolator());
+        mAnimator.addUpdateListener(new ValueAnimator.AnimatorUpdateListener() {
+            @Override
+            public void onAnimationUpdate(ValueAnimator animation) {
+                applyFrame(animation.getAnimatedFraction());
+            }
+        });
+        mAnimator.addListener(new AnimatorListenerAdapter() {
+            @Override
+            public void onAnimationEnd(Animator animation) {
+                finish();
+            }
+        });
+    }
+
+    /**
+     * Returns whether the view is hidden or being hidden.
+     */
+    boolean isHidden() {
+        return mAnimator.isStarted() ? mHidden : mView.getVisibility() == View.INVISIBLE;
+    }
+
+    boolean isRunning() {
+        return mAnimator.isStarted();
+    }
+
+    /**
+     * Shows the view, playing the given animation or reversing the running hide animation.
+     *
+     * @param animation the show animation, or null to show the view right away
+     */
+    void show(Animation animation) {
+        if (!isHidden()) return;
+
+        mHidden = false;
+        if (!retarget(animation)) {
+            mView.setVisibility(View.VISIBLE);
+            notifyFinished();
+        }
+    }
+
+    /**
+     * Hides the view, playing the given animation or reversing the running show animation.
+     *
+     * @param animation the hide animation, or null to hide the view right away
+     */
+    void hide(Animation animation) {
+        if (isHidden()) return;
+
+        mHidden = true;
+        if (!retarget(animation)) {
+            mView.setVisibility(View.INVISIBLE);
+            notifyFinished();
+        }
+    }
+
+    /**
+     * Limits how long the animations may take. Longer animations are played faster.
+     *
+     * @param maxDuration the maximum duration in milliseconds, or 0 for no limit
+     */
+    void setMaxDuration(long maxDuration) {
+        mMaxDuration = maxDuration;
+    }
+
+    /**
+     * Sets whether the view is drawn into a hardware layer while it animates, which saves
+     * redrawing it on every frame. The layer is released when the animation ends.
+     */
+    void setUseHardwareLayer(boolean useHardwareLayer) {
+        mUseHardwareLayer = useHardwareLayer;
+    }
+
+    /**
+     * Jumps to the end of the running animation.
+     */
+    void cancel() {
+        mAnimator.cancel();
+    }
+
+    /**
+     * Turns the running animation around, or starts the given one.
+     *
+     * @return false if nothing is animated and the view has to be updated right away
+     */
+    private boolean retarget(Animation animation) {
+        if (mAnimator.isRunning()) {
+            mAnimator.reverse();
+            return true;
+        }
+
+        // nothing has been drawn yet, or there is nothing to draw at all
+        mRetargeting = true;
+        mAnimator.cancel();
+        mRetargeting = false;
+        if (animation == null || mView.getWidth() == 0 || mView.getWindowVisibility() != View.VISIBLE) {
+            return false;
+        }
+
+        mAnimation = animation;
+        mDuration = animation.computeDurationHint();
+        mBaseTranslationX = mView.getTranslationX();
+        mBaseTranslationY = mView.getTranslationY();
+        mBaseRotation = mView.getRotation();
+        mBaseScaleX = mView.getScaleX();
+        mBaseScaleY = mView.getScaleY();
+        mBaseAlpha = mView.getAlpha();
+        mRotated = false;
+
+        // a software layer is kept, since the view relies on it to draw
+        mLayerPromoted = mUseHardwareLayer && mView.isHardwareAccelerated()
+                && mView.getLayerType() == View.LAYER_TYPE_NONE;
+        if (mLayerPromoted) {
+            mView.setLayerType(View.LAYER_TYPE_HARDWARE, null);
+        }
+
+        mView.setVisibility(View.VISIBLE);
+        initializeAnimation();
+        applyFrame(0f);
+        mAnimator.setDuration(mMaxDuration > 0 ? Math.min(mDuration, mMaxDuration) : mDuration);
+        mAnimator.start();
+        return true;
+    }
+
+    private void initializeAnimation() {
+        View parent = (View) mView.getParent();
+        mInitializedWidth = mView.getWidth();
+        mInitializedHeight = mView.getHeight();
+        mInitializedParentWidth = parent != null ? parent.getWidth() : 0;
+        mInitializedParentHeight = parent != null ? parent.getHeight() : 0;
+
+        mAnimation.initialize(mInitializedWidth, mInitializedHeight,
+                mInitializedParentWidth, mInitializedParentHeight);
+        mAnimation.setStartTime(0);
+        sInitializedBy.put(mAnimation, mId);
+    }
+
+    private boolean isAnimationInitialized() {
+        View parent = (View) mView.getParent();
+        Integer initializedBy = sInitializedBy.get(mAnimation);
+        return initializedBy != null && initializedBy == mId
+                && mView.getWidth() == mInitializedWidth && mView.getHeight() == mInitializedHeight
+                && (parent != null ? parent.getWidth() : 0) == mInitializedParentWidth
+                && (parent != null ? parent.getHeight() : 0) == mInitializedParentHeight;
+    }
+
+    private void applyFrame(float fraction) {
+        if (!isAnimationInitialized()) {
+            initializeAnimation();
+        }
+
+        Transformation t = mTransformation;
+        t.clear();
+        mAnimation.getTransformation((long) (fraction * mDuration), t);
+
+        t.getMatrix().getValues(mValues);
+        float a = mValues[Matrix.MSCALE_X];
+        float b = mValues[Matrix.MSKEW_X];
+        float c = mValues[Matrix.MSKEW_Y];
+        float d = mValues[Matrix.MSCALE_Y];
+
+        // decompose the matrix into a scale and a rotation around the pivot of the view
+        float scaleX = (float) Math.sqrt(a * a + c * c);
+        float scaleY = scaleX != 0 ? (a * d - b * c) / scaleX : d;
+        float pivotX = mView.getPivotX();
+        float pivotY = mView.getPivotY();
+
+        mView.setScaleX(mBaseScaleX * scaleX);
+        mView.setScaleY(mBaseScaleY * scaleY);
+        // the rotation is only touched by rotating animations, e.g. the menu icon has its own
+        if (c != 0 && scaleX != 0) {
+            mView.setRotation(mBaseRotation + (float) Math.toDegrees(Math.atan2(c, a)));
+            mRotated = true;
+        }
+        mView.setTranslationX(mBaseTranslationX + mValues[Matrix.MTRANS_X] - pivotX + a * pivotX + b * pivotY);
+        mView.setTranslationY(mBaseTranslationY + mValues[Matrix.MTRANS_Y] - pivotY + c * pivotX + d * pivotY);
+        mView.setAlpha(mBaseAlpha * t.getAlpha());
+    }
+
+    private void notifyFinished() {
+        if (mListener != null) {
+            mListener.onShowHideFinished(mHidden);
+        }
+    }
+
+    private void finish() {
+        mView.setScaleX(mBaseScaleX);
+        mView.setScaleY(mBaseScaleY);
+        if (mRotated) {
+            mView.setRotation(mBaseRotation);
+        }
+        mView.setTranslationX(mBaseTranslationX);
+        mView.setTranslationY(mBaseTranslationY);
+        mView.setAlpha(mBaseAlpha);
+        mAnimation = null;
+
+        if (mLayerPromoted) {
+            mView.setLayerType(View.LAYER_TYPE_NONE, null);
+            mLayerPromoted = false;
+        }
+
+        if (mHidden) {
+            mView.setVisibility(View.INVISIBLE);
+        }
+
+        // the animation replacing this one reports its own end
+        if (!mRetargeting) {
+            notifyFinished();
+        }
+    }
+}
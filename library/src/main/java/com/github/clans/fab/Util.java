@@ -1,6 +1,5 @@
 package com.github.clans.fab;
 
-import android.content.Context;
 import android.os.Build;
 
 final class Util {
@@ -8,11 +7,6 @@ final class Util {
     private Util() {
     }
 
-    static int dpToPx(Context context, float dp) {
-        final float scale = context.getResources().getDisplayMetrics().density;
-        return Math.round(dp * scale);
-    }
-
     static boolean hasJellyBean() {
         return Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN;
     }
@@ -6,12 +6,12 @@ import android.os.Handler;
 import android.support.v7.app.ActionBarActivity;
 import android.view.View;
 import android.view.animation.AnimationUtils;
-import android.widget.AbsListView;
 import android.widget.ArrayAdapter;
 import android.widget.ListView;
 
 import com.github.fab.sample.R;
 import com.github.clans.fab.FloatingActionButton;
+import com.github.clans.fab.ScrollBehavior;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -20,8 +20,6 @@ import java.util.Locale;
 
 public class MainActivity extends ActionBarActivity {
 
-    private int mPreviousVisibleItem;
-
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -55,20 +53,6 @@ public class MainActivity extends ActionBarActivity {
             }
         });
 
-        listView.setOnScrollListener(new AbsListView.OnScrollListener() {
-            @Override
-            public void onScrollStateChanged(AbsListView view, int scrollState) {
-            }
-
-            @Override
-            public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
-                if (firstVisibleItem > mPreviousVisibleItem) {
-                    fab.hide(true);
-                } else if (firstVisibleItem < mPreviousVisibleItem) {
-                    fab.show(true);
-                }
-                mPreviousVisibleItem = firstVisibleItem;
-            }
-        });
+        new ScrollBehavior(fab).attachTo(listView, null);
     }
 }
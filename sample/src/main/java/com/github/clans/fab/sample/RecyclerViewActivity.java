@@ -11,6 +11,7 @@ import android.view.ViewGroup;
 import android.widget.TextView;
 
 import com.github.clans.fab.FloatingActionButton;
+import com.github.clans.fab.ScrollBehavior;
 import com.github.fab.sample.R;
 
 import java.util.LinkedList;
@@ -21,7 +22,6 @@ import java.util.Locale;
  */
 public class RecyclerViewActivity extends ActionBarActivity {
 
-    private int mScrollOffset = 4;
     private int mMaxProgress = 100;
     private LinkedList<ProgressType> mProgressTypes;
     private Handler mUiHandler = new Handler();
@@ -79,16 +79,19 @@ public class RecyclerViewActivity extends ActionBarActivity {
             }
         });
 
+        final ScrollBehavior scrollBehavior = new ScrollBehavior(fab);
         recyclerView.setOnScrollListener(new RecyclerView.OnScrollListener() {
             @Override
             public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
                 super.onScrolled(recyclerView, dx, dy);
-                if (Math.abs(dy) > mScrollOffset) {
-                    if (dy > 0) {
-                        fab.hide(true);
-                    } else {
-                        fab.show(true);
-                    }
+                scrollBehavior.onScrolled(dy);
+            }
+
+            @Override
+            public void onScrollStateChanged(RecyclerView recyclerView, int newState) {
+                super.onScrollStateChanged(recyclerView, newState);
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    scrollBehavior.onScrollStopped();
                 }
             }
         });